@@ -0,0 +1,62 @@
+package bench;
+
+import engine.DrawEngine;
+import engine.DrawRound;
+import model.User;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// The draw hot paths: one scroll frame (showRandomUser) and one winner round (stop)
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DrawBenchmark {
+    @Param({"1000", "10000", "100000", "1000000"})
+    public int size;
+
+    @Param({"1", "10", "100"})
+    public int count;
+
+    @Param({"false", "true"})
+    public boolean repeatAllowed;
+
+    @Param({"false", "true"})
+    public boolean weighted;
+
+    private List<User> users;
+    private DrawEngine engine;
+    private int[] frame;
+
+    @Setup(Level.Trial)
+    public void generate() {
+        users = RosterGenerator.users(size, 42);
+        engine = new DrawEngine();
+        frame = new int[count];
+    }
+
+    @Setup(Level.Iteration)
+    public void reload() {
+        engine.loadRoster(users);
+        engine.setWeighted(weighted);
+    }
+
+    @Benchmark
+    public int frame() {
+        return engine.sample(count, repeatAllowed, frame);
+    }
+
+    // Without repeats the pool drains; it is refilled when empty, which adds an amortized
+    // O(size / (size / count)) = O(count) to each round
+    @Benchmark
+    public DrawRound round() {
+        if (engine.isExhausted(repeatAllowed)) {
+            engine.loadRoster(users);
+        }
+        return engine.draw(count, repeatAllowed);
+    }
+}
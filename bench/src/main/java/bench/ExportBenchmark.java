@@ -0,0 +1,54 @@
+package bench;
+
+import engine.CsvExport;
+import engine.DrawEngine;
+import engine.DrawRound;
+import engine.ResultExporter;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// Export of one round with the given number of winners: the GUI's CSV save, and the
+// streaming history exporter in each format
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ExportBenchmark {
+    @Param({"100", "10000", "100000"})
+    public int winners;
+
+    @Param({"CSV", "JSON_LINES"})
+    public ResultExporter.Format format;
+
+    private DrawRound round;
+    private List<DrawRound> history;
+    private File out;
+
+    @Setup(Level.Trial)
+    public void draw() throws IOException {
+        DrawEngine engine = new DrawEngine();
+        engine.loadRoster(RosterGenerator.users(winners, 42));
+        round = engine.draw(winners, false);
+        history = Collections.singletonList(round);
+        out = Files.createTempFile("export-", ".csv").toFile();
+        out.deleteOnExit();
+    }
+
+    @Benchmark
+    public boolean exportRound() {
+        return CsvExport.exportRound(round, out);
+    }
+
+    @Benchmark
+    public long exportHistory() throws IOException {
+        return new ResultExporter(format, true).export(history, out, null);
+    }
+}
@@ -0,0 +1,43 @@
+package bench;
+
+import model.UserLoader;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+// UserLoader.load on a generated roster file of the given size, and the same roster read
+// back from its binary snapshot
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LoadBenchmark {
+    @Param({"1000", "10000", "100000", "1000000"})
+    public int size;
+
+    private File roster;
+
+    @Setup(Level.Trial)
+    public void writeRoster() throws IOException {
+        Path file = RosterGenerator.writeCsv(size, 42);
+        roster = file.toFile();
+        // Writes the snapshot that loadSnapshot reads
+        UserLoader.loadCached(roster);
+        new File(roster.getPath() + ".snapshot").deleteOnExit();
+    }
+
+    @Benchmark
+    public int load() {
+        return UserLoader.load(roster).getUsers().size();
+    }
+
+    @Benchmark
+    public int loadSnapshot() {
+        return UserLoader.loadCached(roster).getUsers().size();
+    }
+}
@@ -0,0 +1,53 @@
+package bench;
+
+import model.Roster;
+import model.User;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// Measured heap per entrant: ArrayList<User> versus the columnar Roster.
+// Run: java -cp bench/target/benchmarks.jar bench.RosterFootprint [size]
+public class RosterFootprint {
+    public static void main(String[] args) {
+        int size = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+
+        long before = usedHeap();
+        List<User> list = copyWithPhotoPaths(RosterGenerator.users(size, 42));
+        long listBytes = usedHeap() - before;
+
+        before = usedHeap();
+        Roster roster = Roster.of(list);
+        long rosterBytes = usedHeap() - before;
+        list.clear();
+        list = null;
+        long afterListFreed = usedHeap();
+
+        System.out.printf("entrants: %d%n", size);
+        System.out.printf("ArrayList<User>: %.1f MB, %.1f B/entrant%n", listBytes / 1048576.0, (double) listBytes / size);
+        System.out.printf("Roster (measured): %.1f MB, %.1f B/entrant%n", rosterBytes / 1048576.0, (double) rosterBytes / size);
+        System.out.printf("Roster (estimated): %s%n", roster.memoryReport());
+        System.out.printf("heap after the list is dropped: %.1f MB%n", afterListFreed / 1048576.0);
+    }
+
+    // Resolved photo paths are distinct absolute strings, as after UserLoader
+    private static List<User> copyWithPhotoPaths(List<User> users) {
+        List<User> out = new ArrayList<>(users.size());
+        String base = System.getProperty("user.dir") + "/";
+        for (User u : users) out.add(new User(u.getId(), u.getName(), base + u.getPhotoPath()));
+        return out;
+    }
+
+    private static long usedHeap() {
+        Runtime rt = Runtime.getRuntime();
+        for (int i = 0; i < 4; i++) {
+            System.gc();
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        return rt.totalMemory() - rt.freeMemory();
+    }
+}
@@ -0,0 +1,69 @@
+package bench;
+
+import model.User;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+// Synthetic rosters so the benchmarks need no data files.
+// Names are random two/three-character Chinese names; photo paths follow the
+// images/userN.jpg layout of the sample roster, and about 1 in 50 lines quotes its name.
+// Weights are 1 to 5 tickets.
+public final class RosterGenerator {
+    private static final String SURNAMES = "王李张刘陈杨黄赵吴周徐孙马朱胡郭何高林罗";
+    private static final String GIVEN = "思远梦瑶子轩欣怡俊豪雨彤浩然婉婷志成晓彤嘉欣宇航文博佳怡";
+
+    private RosterGenerator() {
+    }
+
+    public static List<User> users(int size, long seed) {
+        SplittableRandom random = new SplittableRandom(seed);
+        List<User> users = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            users.add(new User(id(i), name(random), "images/user" + (i % 10 + 1) + ".jpg", 1 + random.nextInt(5)));
+        }
+        return users;
+    }
+
+    public static Path writeCsv(int size, long seed) throws IOException {
+        Path file = Files.createTempFile("roster-" + size + "-", ".csv");
+        file.toFile().deleteOnExit();
+        SplittableRandom random = new SplittableRandom(seed);
+        try (BufferedWriter w = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            w.write('\uFEFF');
+            for (int i = 0; i < size; i++) {
+                String name = name(random);
+                if (random.nextInt(50) == 0) name = "\"" + name + ", 部门" + random.nextInt(10) + "\"";
+                w.write(id(i));
+                w.write(',');
+                w.write(name);
+                w.write(",images/user");
+                w.write(Integer.toString(i % 10 + 1));
+                w.write(".jpg,");
+                w.write(Integer.toString(1 + random.nextInt(5)));
+                w.write('\n');
+            }
+        }
+        return file;
+    }
+
+    private static String id(int i) {
+        return String.format("%07d", i + 1);
+    }
+
+    private static String name(SplittableRandom random) {
+        StringBuilder sb = new StringBuilder(3);
+        sb.append(SURNAMES.charAt(random.nextInt(SURNAMES.length())));
+        int given = 1 + random.nextInt(2);
+        for (int i = 0; i < given; i++) {
+            sb.append(GIVEN.charAt(random.nextInt(GIVEN.length())));
+        }
+        return sb.toString();
+    }
+}
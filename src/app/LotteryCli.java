@@ -0,0 +1,151 @@
+package app;
+
+import engine.CsvExport;
+import engine.DrawEngine;
+import engine.DrawJournal;
+import engine.DrawRound;
+import engine.DrawSeed;
+import engine.DrawVerifier;
+import engine.PrizePlan;
+import model.Roster;
+import model.UserLoadResult;
+import model.UserLoader;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+
+// Headless batch mode: load a roster, run draws and stream the winners out as CSV.
+// Draws are seeded (a fresh seed unless --seed is given), so --verify can re-run them later.
+// Usage: java app.LotteryCli --roster data/users.txt --count 10 [--rounds 5] [--repeat] [--weighted] [--plan 特等奖:1,一等奖:10] [--seed <hex>] [--out result.csv] [--journal draws.journal] [--stats]
+//        java app.LotteryCli --roster data/users.txt --verify draws.journal [--verify-round 3] [--seed <hex>]
+public class LotteryCli {
+
+    public static void main(String[] args) {
+        String roster = "data/users.txt";
+        String out = null;
+        String journalPath = null;
+        String verifyPath = null;
+        int verifyRound = 0;
+        Long seed = null;
+        int count = 1;
+        int rounds = 1;
+        boolean repeatAllowed = false;
+        boolean stats = false;
+        boolean weighted = false;
+        PrizePlan plan = null;
+        try {
+            for (int i = 0; i < args.length; i++) {
+                switch (args[i]) {
+                    case "--roster": roster = args[++i]; break;
+                    case "--count": count = Integer.parseInt(args[++i]); break;
+                    case "--rounds": rounds = Integer.parseInt(args[++i]); break;
+                    case "--repeat": repeatAllowed = true; break;
+                    case "--weighted": weighted = true; break;
+                    case "--plan": plan = PrizePlan.parse(args[++i]); break;
+                    case "--out": out = args[++i]; break;
+                    case "--journal": journalPath = args[++i]; break;
+                    case "--seed": seed = DrawSeed.parse(args[++i]); break;
+                    case "--verify": verifyPath = args[++i]; break;
+                    case "--verify-round": verifyRound = Integer.parseInt(args[++i]); break;
+                    case "--stats": stats = true; break;
+                    default: usage("未知参数: " + args[i]); return;
+                }
+            }
+        } catch (ArrayIndexOutOfBoundsException | NumberFormatException e) {
+            usage("参数格式错误");
+            return;
+        } catch (IllegalArgumentException e) {
+            usage("奖项方案格式错误: " + e.getMessage());
+            return;
+        }
+
+        UserLoadResult loaded = UserLoader.load(new File(roster));
+        if (loaded.isFailed()) {
+            System.err.println("读取名单失败: " + loaded.getFailure());
+            System.exit(1);
+        }
+        for (UserLoadResult.LineError e : loaded.getErrors()) {
+            System.err.println("名单格式错误，" + e);
+        }
+        if (verifyPath != null) {
+            verify(Roster.of(loaded.getUsers()), new File(verifyPath), verifyRound, seed);
+            return;
+        }
+
+        DrawEngine engine = new DrawEngine();
+        engine.loadRoster(loaded.getUsers());
+        engine.setWeighted(weighted);
+        engine.setSeed(seed != null ? seed : DrawSeed.newSeed());
+        System.err.println("随机种子: " + DrawSeed.format(engine.getSeed()) + "（复核结果时使用）");
+        DrawJournal journal = null;
+        if (journalPath != null) {
+            // Resumes a previous run on the same roster: its winners stay excluded
+            try {
+                journal = DrawJournal.open(new File(journalPath));
+                int restored = engine.attachJournal(journal);
+                System.err.println(journal.describeRecovery() + "，已恢复 " + restored + " 轮");
+            } catch (IOException e) {
+                System.err.println("打开抽奖日志失败: " + e.getMessage());
+                System.exit(1);
+            }
+        }
+        if (stats) {
+            System.err.println(engine.getRoster().memoryReport());
+        }
+
+        try (Writer w = out == null
+                ? new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8))
+                : new BufferedWriter(new OutputStreamWriter(new FileOutputStream(out), StandardCharsets.UTF_8))) {
+            w.write(plan == null ? "轮次," + CsvExport.HEADER : "轮次,奖项," + CsvExport.HEADER);
+            w.write(System.lineSeparator());
+            for (int r = 0; r < rounds; r++) {
+                if (engine.isExhausted(repeatAllowed)) {
+                    System.err.println("所有人都已被抽过！已完成 " + r + " 轮");
+                    break;
+                }
+                if (plan != null) {
+                    for (DrawRound tier : engine.drawPlan(plan, repeatAllowed)) {
+                        CsvExport.writeRows(tier, w, true, true);
+                    }
+                } else {
+                    CsvExport.writeRows(engine.draw(count, repeatAllowed), w, true, false);
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("写出结果时发生错误: " + e.getMessage());
+            System.exit(1);
+        } finally {
+            if (journal != null) {
+                try {
+                    journal.close();
+                } catch (IOException e) {
+                    System.err.println("关闭抽奖日志失败: " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    // Re-run the journal's seeded draws against the roster; exit status 3 if any differ
+    private static void verify(Roster roster, File journalFile, int round, Long seed) {
+        try {
+            DrawJournal journal = DrawJournal.read(journalFile);
+            System.err.println(journal.describeRecovery());
+            DrawVerifier.Report report = DrawVerifier.verify(roster, journal, round, seed);
+            System.out.println(report.describe());
+            if (!report.isOk()) System.exit(3);
+        } catch (IOException e) {
+            System.err.println("读取抽奖日志失败: " + e.getMessage());
+            System.exit(1);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.exit(3);
+        }
+    }
+
+    private static void usage(String error) {
+        System.err.println(error);
+        System.err.println("用法: java app.LotteryCli --roster <名单文件> --count <每轮人数> [--rounds <轮数>] [--repeat] [--weighted] [--plan <奖项:人数,...>] [--seed <随机种子>] [--out <结果文件>] [--journal <日志文件>] [--stats]");
+        System.err.println("复核: java app.LotteryCli --roster <名单文件> --verify <日志文件> [--verify-round <轮次>] [--seed <随机种子>]");
+        System.exit(2);
+    }
+}
@@ -2,18 +2,18 @@ package app;
 
 import javafx.application.Application;
 import javafx.stage.Stage;
-import model.User;
-import model.UserLoader;
+import metrics.Metrics;
 import view.LotteryView;
 
-import java.util.List;
+import java.io.File;
 
 public class Main extends Application {
     @Override
     public void start(Stage stage) {
-        List<User> users = UserLoader.loadUsers("data/users.txt");
-        new LotteryView(stage, users);
-
+        Metrics.exposeJmx();
+        // The window comes up at once; the roster streams in behind it
+        LotteryView view = new LotteryView(stage);
+        view.loadRoster(new File("data/users.txt").getAbsoluteFile(), true);
     }
 
     public static void main(String[] args) {
@@ -1,171 +1,347 @@
 package controller;
 
-import javafx.animation.*;
-import javafx.util.Duration;
+import engine.DrawEngine;
+import engine.DrawJournal;
+import engine.DrawRound;
+import engine.DrawSeed;
+import engine.PrizePlan;
+import engine.ResultExporter;
+import javafx.application.Platform;
+import javafx.concurrent.Task;
+import metrics.Histogram;
+import metrics.Metrics;
+import model.PhotoMatcher;
+import model.Roster;
+import model.RosterDiff;
+import model.RosterWatcher;
 import model.User;
+import model.UserLoadResult;
+import model.UserLoadTask;
 import view.LotteryView;
 
 import java.util.*;
+import java.util.function.Consumer;
 import java.io.*;
-import java.nio.charset.StandardCharsets;
-import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
 
 public class LotteryController {
-    private final List<User> users;
-    private final Set<String> usedIds = new HashSet<>();
-    private final Random random = new Random();
+    private static final Histogram STOP = Metrics.histogram("draw.stop");
+
+    private final DrawEngine engine = new DrawEngine();
     private final LotteryView view;
 
-    private Timeline timeline;
+    // Roster indices, reused per frame so scrolling allocates nothing in steady state. The
+    // next frame is picked one tick ahead so its thumbnails can be decoded before it is
+    // shown; it is picked again if the roster changed in between.
+    private int[] frame = new int[0];
+    private int[] nextFrame = new int[0];
+    private int frameCount;
+    private int nextFrameCount;
+    private Roster frameRoster;
+    private Roster nextFrameRoster;
+
+    // Rolling display while a draw runs: -Dlottery.scrollIntervalMs between changes (default
+    // 80) and -Dlottery.frameBudgetMs per update (default 8) before a pulse is yielded
+    private final ScrollAnimator scroller = new ScrollAnimator(this::showRandomUser,
+            Long.getLong("lottery.scrollIntervalMs", 80), Long.getLong("lottery.frameBudgetMs", 8));
+    // When set, stop() draws every tier of the plan at once instead of a single count
+    private PrizePlan plan;
 
-    // Store last draw result
-    private List<User> lastWinners = new ArrayList<>();
+    // Crash-safe record of every draw; null if it could not be opened
+    private DrawJournal journal;
+    private boolean journalOpened;
+    // Reloads the roster file when it is edited during the event
+    private RosterWatcher watcher;
+    // The engine's roster, republished by the FX thread whenever it changes, so the watcher
+    // thread can diff against it without touching the (single-threaded) engine
+    private volatile Roster installed = engine.getRoster();
 
-    public LotteryController(List<User> users, LotteryView view) {
-        this.users = new ArrayList<>(users);
+    // Starts with an empty roster; the journal is opened with the first one installed, so
+    // draws from before a restart are replayed against it
+    public LotteryController(LotteryView view) {
         this.view = view;
+        engine.setSeed(eventSeed());
+    }
+
+    // Event seed as announced, 16 hex digits
+    public String getSeedText() {
+        return DrawSeed.format(engine.getSeed());
+    }
+
+    // Where every draw is recorded, -Dlottery.journal (default data/draws.journal)
+    public String getJournalPath() {
+        return System.getProperty("lottery.journal", "data/draws.journal");
+    }
+
+    // Winners are drawn from -Dlottery.seed=<hex> when given (e.g. a seed announced before
+    // the event), otherwise from a fresh random seed
+    private static long eventSeed() {
+        String configured = System.getProperty("lottery.seed");
+        if (configured != null && !configured.isBlank()) {
+            try {
+                return DrawSeed.parse(configured);
+            } catch (NumberFormatException e) {
+                System.err.println("随机种子格式错误，将使用新的随机种子: " + configured);
+            }
+        }
+        return DrawSeed.newSeed();
+    }
+
+    // Read a roster file in the background: each batch is handed to onBatch on the FX
+    // thread as it is parsed, the task's message and progress follow them, and cancelling
+    // it stops the load
+    public Task<UserLoadResult> loadRoster(File file, Consumer<Roster> onBatch) {
+        return new Task<UserLoadResult>() {
+            private long loaded;
+            private final UserLoadTask streaming = new UserLoadTask(file, (users, done, total) -> {
+                loaded += users.size();
+                updateMessage("正在读取名单… 已读取 " + loaded + " 人");
+                updateProgress(done, total);
+                Platform.runLater(() -> onBatch.accept(users));
+            });
+
+            @Override
+            protected UserLoadResult call() {
+                return streaming.call();
+            }
+
+            @Override
+            protected void cancelled() {
+                streaming.cancel();
+            }
+        };
+    }
+
+    // Replay the draw journal so winners drawn before a crash or restart stay excluded
+    private void openJournal() {
+        File file = new File(getJournalPath());
+        try {
+            long start = System.nanoTime();
+            journal = DrawJournal.open(file);
+            int restored = engine.attachJournal(journal);
+            // The restored rounds go to the status line; only a damaged journal is worth stderr
+            if (journal.getDiscardedBytes() > 0) {
+                System.err.println(journal.describeRecovery());
+            }
+            if (restored > 0) {
+                long ms = (System.nanoTime() - start) / 1_000_000;
+                view.showStatus("已从抽奖日志恢复 " + restored + " 轮（已抽 " + engine.drawnCount()
+                        + " 人，用时 " + ms + " ms），请点击开始抽奖");
+            }
+        } catch (IOException e) {
+            System.err.println("打开抽奖日志失败，本次抽取不会被记录: " + e.getMessage());
+        }
+    }
+
+    // Watch the roster file: late registrations and edits are applied as a diff, keeping
+    // who has been drawn. Replaces any previous watch.
+    public void watchRoster(File file) {
+        closeWatcher();
+        try {
+            watcher = new RosterWatcher(file, this::rosterReloaded);
+        } catch (IOException e) {
+            System.err.println("无法监视名单文件 " + file + ": " + e.getMessage());
+        }
+    }
+
+    // Watcher thread: the diff is computed here against the roster last installed
+    // (immutable), and only applied on the FX thread
+    private void rosterReloaded(UserLoadResult result) {
+        if (result.isFailed() || result.getUsers().isEmpty()) {
+            System.err.println("名单文件已变化，但重新读取失败: "
+                    + (result.isFailed() ? result.getFailure() : "名单为空"));
+            return;
+        }
+        for (UserLoadResult.LineError e : result.getErrors()) {
+            System.err.println("名单格式错误，" + e);
+        }
+        Roster next = Roster.of(result.getUsers());
+        RosterDiff diff = RosterDiff.compute(installed, next);
+        Platform.runLater(() -> {
+            // The roster may have been replaced in the meantime
+            RosterDiff current = diff.getBase() == engine.getRoster() ? diff : RosterDiff.compute(engine.getRoster(), next);
+            applyRosterUpdate(current);
+        });
+    }
+
+    // Apply a roster diff to the draw state and let the view drop stale thumbnails
+    public void applyRosterUpdate(RosterDiff diff) {
+        if (diff.isEmpty()) return;
+        engine.applyDiff(diff);
+        installed = engine.getRoster();
+        view.rosterUpdated(diff);
+    }
+
+    public Roster getRoster() {
+        return engine.getRoster();
+    }
+
+    private void closeWatcher() {
+        if (watcher != null) {
+            try {
+                watcher.close();
+            } catch (IOException e) {
+                // nothing left to release
+            }
+            watcher = null;
+        }
+    }
+
+    // Make sure every draw is on disk before the app exits
+    public void shutdown() {
+        closeWatcher();
+        scroller.stop();
+        if (journal != null) {
+            try {
+                journal.close();
+            } catch (IOException e) {
+                System.err.println("关闭抽奖日志失败: " + e.getMessage());
+            }
+        }
     }
 
     public void start() {
         boolean repeatAllowed = view.isRepeatAllowed();
-        if (!repeatAllowed && usedIds.size() == users.size()) {
+        engine.setWeighted(view.isWeighted());
+        if (engine.isExhausted(repeatAllowed)) {
             view.showMessage("所有人都已被抽过！", new ArrayList<>());
             return;
         }
-        if (timeline != null && timeline.getStatus() == Animation.Status.RUNNING)
+        if (scroller.isRunning())
             return;
 
-        timeline = new Timeline(new KeyFrame(Duration.millis(80), e -> showRandomUser()));
-        timeline.setCycleCount(Animation.INDEFINITE);
-        timeline.play();
+        nextFrameCount = 0;
+        scroller.start();
     }
 
     public void stop() {
-        if (timeline != null && timeline.getStatus() == Animation.Status.RUNNING) {
-            timeline.stop();
+        if (scroller.isRunning()) {
+            long started = Metrics.now();
+            scroller.stop();
             int count = view.getDrawCount();
             boolean repeatAllowed = view.isRepeatAllowed();
 
-            List<User> winners = new ArrayList<>();
-
-            // Build a temporary pool for THIS single draw so we don't pick the same person twice
-            // within the same stop() invocation. This respects global `usedIds` only when
-            // repeatAllowed == false (i.e. people already drawn in previous rounds are excluded).
-            List<User> pool = new ArrayList<>(users);
-            if (!repeatAllowed) {
-                pool.removeIf(u -> usedIds.contains(u.getId()));
-            }
-
-            // Cap the number of winners to the pool size to avoid infinite loops
-            int picks = Math.min(count, pool.size());
-            for (int i = 0; i < picks; i++) {
-                if (pool.isEmpty()) break;
-                User selected = pool.remove(random.nextInt(pool.size()));
-                winners.add(selected);
-                // If repeats are not allowed across rounds, mark selected as used globally
-                if (!repeatAllowed) {
-                    usedIds.add(selected.getId());
-                }
+            if (plan != null) {
+                view.showPlanResults(engine.drawPlan(plan, repeatAllowed));
+            } else {
+                DrawRound round = engine.draw(count, repeatAllowed);
+                view.showMessage("中奖名单：", round.getWinners());
             }
-
-            // Save last winners
-            lastWinners = new ArrayList<>(winners);
-
-            view.showMessage("中奖名单：", winners);
+            STOP.recordSince(started);
         }
     }
 
     private void showRandomUser() {
         int count = view.getDrawCount();
         boolean repeatAllowed = view.isRepeatAllowed();
-        List<User> usersToDisplay = new ArrayList<>();
-
-        List<User> availableUsersForRandom = new ArrayList<>(users);
-        if (!repeatAllowed) {
-            availableUsersForRandom.removeIf(u -> usedIds.contains(u.getId()));
-        }
 
-        if (availableUsersForRandom.isEmpty()) {
+        if (engine.isExhausted(repeatAllowed)) {
             view.showMessage("所有人都已被抽过！", new ArrayList<>());
-            if (timeline != null) {
-                timeline.stop();
-            }
+            scroller.stop();
             return;
         }
 
-        // Select 'count' random users for display during scrolling.
-        // Remove selected items from the temporary list to avoid duplicates within the
-        // same frame (so the same person doesn't appear more than once in that display).
-        for (int i = 0; i < count; i++) {
-            if (availableUsersForRandom.isEmpty()) {
-                break; // Not enough users to display 'count' unique users
-            }
-            User user = availableUsersForRandom.remove(random.nextInt(availableUsersForRandom.size()));
-            usersToDisplay.add(user);
+        if (nextFrameCount == 0 || nextFrameRoster != engine.getRoster()) {
+            sampleNextFrame(count, repeatAllowed);
         }
-        view.updateDisplay(usersToDisplay);
+        int[] shown = nextFrame;
+        nextFrame = frame;
+        frame = shown;
+        frameCount = nextFrameCount;
+        frameRoster = nextFrameRoster;
+        view.updateDisplay(frameRoster, frame, frameCount);
+
+        sampleNextFrame(count, repeatAllowed);
+        view.prefetch(nextFrameRoster, nextFrame, nextFrameCount);
+    }
+
+    private void sampleNextFrame(int count, boolean repeatAllowed) {
+        if (nextFrame.length < count) nextFrame = new int[count];
+        nextFrameRoster = engine.getRoster();
+        nextFrameCount = engine.sample(count, repeatAllowed, nextFrame);
+    }
+
+    // Export the latest draw result (every tier of a prize plan) to CSV; run the task on a
+    // background thread
+    public Task<Long> exportLastWinners(File file) {
+        return exportTask(engine.getLastBatch(), file, ResultExporter.Format.CSV, false);
     }
 
-    // Export the latest draw result to CSV
-    public boolean exportLastWinnersToCSV(File file) {
-        if (lastWinners == null || lastWinners.isEmpty() || file == null) {
-            return false;
+    // Export rounds fromRound..toRound (inclusive, by round number) of the whole event
+    public Task<Long> exportHistory(int fromRound, int toRound, File file, ResultExporter.Format format) {
+        List<DrawRound> selected = new ArrayList<>();
+        for (DrawRound r : engine.getRounds()) {
+            if (r.getNumber() >= fromRound && r.getNumber() <= toRound) selected.add(r);
         }
-        DateTimeFormatter fmt = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
-        String drawTime = LocalDateTime.now().format(fmt);
-        try (BufferedWriter bw = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8))) {
-            // UTF-8 BOM for Excel compatibility on Windows
-            bw.write('\uFEFF');
-            bw.write("编号,姓名,照片路径,抽取时间");
-            bw.newLine();
-            for (User u : lastWinners) {
-                String id = safe(u.getId());
-                String name = safe(u.getName());
-                String photo = safe(u.getPhotoPath());
-                bw.write(String.join(",", escapeCsv(id), escapeCsv(name), escapeCsv(photo), escapeCsv(drawTime)));
-                bw.newLine();
+        return exportTask(selected, file, format, true);
+    }
+
+    // Rounds and rosters are immutable, so the snapshot can be written off the FX thread
+    private Task<Long> exportTask(List<DrawRound> rounds, File file, ResultExporter.Format format, boolean withRound) {
+        List<DrawRound> snapshot = new ArrayList<>(rounds);
+        return new Task<Long>() {
+            @Override
+            protected Long call() throws Exception {
+                return new ResultExporter(format, withRound).export(snapshot, file, this::updateProgress);
             }
-            bw.flush();
-            return true;
-        } catch (IOException e) {
-            System.err.println("导出 CSV 时发生错误: " + e.getMessage());
-            return false;
-        }
+        };
+    }
+
+    // Batch photo import: scan dir and match its photos to the current roster in the
+    // background; the result's diff is applied with applyRosterUpdate
+    public Task<PhotoMatcher.Result> matchPhotos(File dir) {
+        Roster roster = engine.getRoster();
+        return new Task<PhotoMatcher.Result>() {
+            @Override
+            protected PhotoMatcher.Result call() throws Exception {
+                return PhotoMatcher.match(roster, dir, (phase, done, total) -> {
+                    updateMessage(total < 0 ? phase + "：已发现 " + done + " 张图片" : phase + "：" + done + " / " + total);
+                    updateProgress(done, total);
+                });
+            }
+        };
     }
 
-    private static String safe(String s) { return s == null ? "" : s; }
+    public int roundCount() {
+        DrawRound last = engine.getLastRound();
+        return last == null ? 0 : last.getNumber();
+    }
 
-    private static String escapeCsv(String s) {
-        if (s.contains(",") || s.contains("\"") || s.contains("\n") || s.contains("\r")) {
-            s = s.replace("\"", "\"\"");
-            return "\"" + s + "\"";
+    public boolean hasLastWinners() {
+        for (DrawRound round : engine.getLastBatch()) {
+            if (!round.getWinners().isEmpty()) return true;
         }
-        return s;
+        return false;
     }
 
-    public boolean hasLastWinners() {
-        return lastWinners != null && !lastWinners.isEmpty();
+    public void setPrizePlan(PrizePlan plan) {
+        this.plan = plan;
+    }
+
+    public PrizePlan getPrizePlan() {
+        return plan;
     }
 
     // Allow replacing the roster safely
     public void replaceUsers(List<User> newUsers) {
-        // Stop timeline if running
-        if (timeline != null && timeline.getStatus() == Animation.Status.RUNNING) {
-            timeline.stop();
-        }
-        // Replace list contents without reassigning the final reference
-        users.clear();
-        if (newUsers != null) {
-            users.addAll(newUsers);
+        // Stop scrolling if running
+        scroller.stop();
+        // Replaces the roster and resets drawn state and history, unless it lists the same
+        // entrants (e.g. only the photos changed); the journal starts a new session if so
+        engine.loadRoster(newUsers);
+        installed = engine.getRoster();
+        if (!journalOpened) {
+            journalOpened = true;
+            openJournal();
         }
-        // Reset state
-        usedIds.clear();
-        lastWinners = new ArrayList<>();
     }
 
     // Snapshot of current users for preview
     public List<User> getUsersSnapshot() {
-        return new ArrayList<>(users);
+        return new ArrayList<>(engine.getUsers());
+    }
+
+    // Read-only view of the roster without copying it; valid until the roster is replaced
+    public List<User> getUsersView() {
+        return engine.getUsers();
     }
 }
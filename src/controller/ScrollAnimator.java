@@ -0,0 +1,86 @@
+package controller;
+
+import javafx.animation.AnimationTimer;
+import metrics.Counter;
+import metrics.Histogram;
+import metrics.Metrics;
+
+// Drives the rolling-names effect from the display pulse instead of a fixed Timeline.
+// A new frame is shown at most once per interval; pulses that arrive late coalesce into a
+// single update instead of queuing up, and when an update took longer than the budget the
+// next pulse is left to the renderer so the scene can catch up. The cost of every update
+// and the spacing of pulses go to the scroll.* metrics (JMX / JSON dump).
+// FX thread only.
+final class ScrollAnimator extends AnimationTimer {
+    private static final Histogram UPDATE = Metrics.histogram("scroll.update");
+    private static final Histogram PULSE = Metrics.histogram("scroll.pulseInterval");
+    private static final Counter COALESCED = Metrics.counter("scroll.coalesced");
+    private static final Counter YIELDED = Metrics.counter("scroll.yielded");
+
+    private final Runnable step;
+    private final long intervalNanos;
+    private final long budgetNanos;
+
+    private boolean running;
+    private long lastPulse;
+    private long nextDue;
+    private long lastCost;
+    private boolean yielded;
+
+    // The interval is clamped to at least 1 ms (0 or less would break the schedule) and the
+    // budget to at least 0
+    ScrollAnimator(Runnable step, long intervalMillis, long budgetMillis) {
+        this.step = step;
+        this.intervalNanos = Math.max(1, intervalMillis) * 1_000_000L;
+        this.budgetNanos = Math.max(0, budgetMillis) * 1_000_000L;
+    }
+
+    @Override
+    public void start() {
+        running = true;
+        lastPulse = 0;
+        nextDue = 0;
+        lastCost = 0;
+        yielded = false;
+        super.start();
+    }
+
+    @Override
+    public void stop() {
+        super.stop();
+        running = false;
+    }
+
+    boolean isRunning() {
+        return running;
+    }
+
+    @Override
+    public void handle(long now) {
+        if (lastPulse != 0) {
+            PULSE.record(now - lastPulse);
+        }
+        lastPulse = now;
+        if (now < nextDue) return;
+        if (lastCost > budgetNanos && !yielded) {
+            // The last update overran: give this pulse to layout and rendering
+            yielded = true;
+            YIELDED.increment();
+            return;
+        }
+        yielded = false;
+        if (nextDue != 0 && now - nextDue >= intervalNanos) {
+            // Late by one or more whole intervals: show one frame, not the backlog
+            COALESCED.add((now - nextDue) / intervalNanos);
+            nextDue = now;
+        }
+
+        long start = System.nanoTime();
+        step.run();
+        long cost = System.nanoTime() - start;
+        lastCost = cost;
+        UPDATE.record(cost);
+        // Keep to the schedule rather than the pulse, so the rate does not drift
+        nextDue = (nextDue == 0 ? now : nextDue) + intervalNanos;
+    }
+}
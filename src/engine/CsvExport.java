@@ -0,0 +1,73 @@
+package engine;
+
+import model.User;
+
+import java.io.*;
+import java.time.format.DateTimeFormatter;
+import java.util.Collections;
+import java.util.List;
+
+// CSV output of draw results, shared by the GUI export and the command-line mode
+public final class CsvExport {
+    public static final String HEADER = "编号,姓名,照片路径,抽取时间";
+    private static final DateTimeFormatter TIME_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+    private CsvExport() {
+    }
+
+    // Write one round to a new file, with a UTF-8 BOM for Excel compatibility on Windows
+    public static boolean exportRound(DrawRound round, File file) {
+        return exportRounds(Collections.singletonList(round), file);
+    }
+
+    // Write several rounds to one file; adds a 奖项 column when they come from a prize plan
+    public static boolean exportRounds(List<DrawRound> rounds, File file) {
+        try {
+            new ResultExporter(ResultExporter.Format.CSV, false).export(rounds, file, null);
+            return true;
+        } catch (IOException e) {
+            System.err.println("导出 CSV 时发生错误: " + e.getMessage());
+            return false;
+        }
+    }
+
+    // One line per winner, optionally prefixed with the round number and the tier name
+    public static void writeRows(DrawRound round, Writer out, boolean withRound, boolean withTier) throws IOException {
+        String drawTime = round.getDrawTime().format(TIME_FORMAT);
+        for (User u : round.getWinners()) {
+            if (withRound) {
+                out.write(Integer.toString(round.getNumber()));
+                out.write(',');
+            }
+            if (withTier) {
+                out.write(escapeCsv(safe(round.getTier())));
+                out.write(',');
+            }
+            out.write(String.join(",", escapeCsv(safe(u.getId())), escapeCsv(safe(u.getName())),
+                    escapeCsv(safe(u.getPhotoPath())), escapeCsv(drawTime)));
+            out.write(System.lineSeparator());
+        }
+    }
+
+    private static String safe(String s) { return s == null ? "" : s; }
+
+    // Quote only when needed; one scan to find the first special char, and the common
+    // no-quote case returns s itself
+    static String escapeCsv(String s) {
+        int n = s.length();
+        int i = 0;
+        while (i < n) {
+            char c = s.charAt(i);
+            if (c == ',' || c == '"' || c == '\n' || c == '\r') break;
+            i++;
+        }
+        if (i == n) return s;
+        StringBuilder sb = new StringBuilder(n + 8).append('"').append(s, 0, i);
+        for (; i < n; i++) {
+            char c = s.charAt(i);
+            if (c == '"') sb.append('"');
+            sb.append(c);
+        }
+        return sb.append('"').toString();
+    }
+}
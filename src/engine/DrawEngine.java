@@ -0,0 +1,371 @@
+package engine;
+
+import model.Roster;
+import model.RosterDiff;
+import model.User;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.SplittableRandom;
+
+// UI-free draw state: the roster, who has already been drawn, and the rounds so far.
+// Shared by the JavaFX controller and the command-line batch mode. Not thread-safe;
+// callers drive it from one thread (the FX thread in the GUI).
+// With a seed set, winners come from DrawSeed streams over a canonical pool instead of the
+// shared Random, so a draw can be re-run from the seed, roster and settings (DrawVerifier);
+// the rolling display keeps using the Random and never touches those streams.
+public class DrawEngine {
+    // Compact columnar roster; User objects only exist for entrants being shown or drawn
+    private Roster users = Roster.of(null);
+    private final Random random;
+    // Drawn flags by roster index; ids are never hashed on the draw path
+    private final DrawnSet drawn = new DrawnSet();
+    // Roster indices still eligible across rounds, and the whole roster for repeat mode
+    private final EligiblePool eligible = new EligiblePool();
+    private final EligiblePool everyone = new EligiblePool();
+    // Weighted counterparts, built on first use of weighted mode
+    private WeightedPool weightedEligible;
+    private WeightedPool weightedEveryone;
+    // Unit-weight pools for seeded uniform draws; unlike EligiblePool their order does not
+    // depend on earlier sampling
+    private WeightedPool uniformEligible;
+    private WeightedPool uniformEveryone;
+    private boolean weighted;
+    private boolean seeded;
+    private long seed;
+    private final List<DrawRound> rounds = new ArrayList<>();
+    private List<DrawRound> lastBatch = Collections.emptyList();
+    // Reused so sampling allocates nothing in steady state
+    private int[] picks = new int[0];
+    // Records every draw when attached; null for throwaway engines
+    private DrawJournal journal;
+
+    public DrawEngine() {
+        this(new Random());
+    }
+
+    public DrawEngine(Random random) {
+        this.random = random;
+    }
+
+    // Replace the roster; clears drawn state and round history unless the new roster lists
+    // the same entrants in the same order (e.g. only the photos were re-matched)
+    public void loadRoster(List<User> roster) {
+        Roster next = Roster.of(roster);
+        if (sameEntrants(users, next)) {
+            users = next;
+            // Weights may have changed; rebuilt from the drawn flags on next use
+            weightedEligible = null;
+            weightedEveryone = null;
+            return;
+        }
+        users = next;
+        resetState();
+        if (journal != null) {
+            journal.appendSession(users.fingerprint(), users.size());
+        }
+    }
+
+    // Apply a reloaded roster without starting over: drawn entrants stay excluded under
+    // their new indices, removed ones leave the pools and new ones become eligible.
+    // The diff must be computed against the current roster.
+    public void applyDiff(RosterDiff diff) {
+        if (diff.getBase() != users) {
+            throw new IllegalStateException("名单已变化，请重新计算差异");
+        }
+        if (diff.isEmpty()) return;
+        Roster next = diff.getNext();
+        int[] wasDrawn = new int[drawn.usedCount()];
+        int n = 0;
+        for (int i = 0; i < drawn.capacity(); i++) {
+            if (drawn.isDrawn(i)) wasDrawn[n++] = i;
+        }
+        users = next;
+        drawn.reset(next.size());
+        for (int i = 0; i < n; i++) {
+            int moved = diff.remap(wasDrawn[i]);
+            if (moved >= 0) drawn.mark(moved);
+        }
+        eligible.reset(next.size(), drawn);
+        everyone.reset(next.size());
+        weightedEligible = null;
+        weightedEveryone = null;
+        uniformEligible = null;
+        uniformEveryone = null;
+        // History keeps its User objects; the journal records where the indices moved, and
+        // a restart carries the recorded draws over the same way. Seeded draws made against
+        // the old roster cannot be re-run against this one and become plain history there.
+        if (journal != null) {
+            journal.appendRemap(diff);
+        }
+    }
+
+    private static boolean sameEntrants(Roster a, Roster b) {
+        return a.size() > 0 && a.size() == b.size() && a.fingerprint() == b.fingerprint();
+    }
+
+    // Record every later draw in the journal. If its last session is for this roster, the
+    // draws it holds are replayed first, so winners stay excluded across a restart.
+    // Returns the number of rounds restored.
+    public int attachJournal(DrawJournal journal) {
+        this.journal = journal;
+        if (!journal.isSessionOf(users.fingerprint(), users.size())) {
+            journal.appendSession(users.fingerprint(), users.size());
+            return 0;
+        }
+        resetState();
+        ZoneId zone = ZoneId.systemDefault();
+        for (DrawJournal.Batch batch : journal.getRecovered()) {
+            replay(batch, zone);
+        }
+        eligible.reset(users.size(), drawn);
+        return rounds.size();
+    }
+
+    // Marks the batch's winners as drawn; the eligible pool is rebuilt once afterwards
+    private void replay(DrawJournal.Batch batch, ZoneId zone) {
+        LocalDateTime time = LocalDateTime.ofInstant(Instant.ofEpochMilli(batch.getEpochMillis()), zone);
+        List<DrawRound> replayed = new ArrayList<>(batch.getRounds().size());
+        List<int[]> slices = new ArrayList<>(batch.getRounds().size());
+        for (DrawJournal.Round r : batch.getRounds()) {
+            int[] indices = r.getWinners();
+            for (int index : indices) {
+                if (index < 0 || index >= users.size()) {
+                    indices = validIndices(indices);
+                    break;
+                }
+            }
+            if (!batch.isRepeatAllowed()) {
+                for (int index : indices) drawn.mark(index);
+            }
+            // Winners of old rounds are only built if someone looks at them
+            replayed.add(new DrawRound(r.getNumber(), time, batch.isRepeatAllowed(), users.select(indices), r.getTier()));
+            slices.add(indices);
+        }
+        record(new Batch(batch.getEpochMillis(), batch.isRepeatAllowed(), batch.isWeighted(),
+                batch.getSeed(), batch.getRequested()), replayed, slices, false);
+    }
+
+    // Remember a finished draw, and append it to the journal unless it came from there
+    private void record(Batch batch, List<DrawRound> batchRounds, List<int[]> batchPicks, boolean journaled) {
+        rounds.addAll(batchRounds);
+        lastBatch = Collections.unmodifiableList(batchRounds);
+        if (journaled && journal != null) {
+            journal.appendBatch(batch.epochMillis, batch.repeatAllowed, batch.weighted, batch.seed, batch.requested,
+                    batchRounds, batchPicks);
+        }
+    }
+
+    private int[] validIndices(int[] indices) {
+        return Arrays.stream(indices).filter(i -> i >= 0 && i < users.size()).toArray();
+    }
+
+    private void resetState() {
+        drawn.reset(users.size());
+        eligible.reset(users.size());
+        everyone.reset(users.size());
+        weightedEligible = null;
+        weightedEveryone = null;
+        uniformEligible = null;
+        uniformEveryone = null;
+        rounds.clear();
+        lastBatch = Collections.emptyList();
+    }
+
+    // Weighted mode draws each entrant with probability proportional to its weight
+    public void setWeighted(boolean weighted) {
+        this.weighted = weighted;
+    }
+
+    public boolean isWeighted() {
+        return weighted;
+    }
+
+    // Draw every later round from this event seed; recorded with each draw in the journal
+    public void setSeed(long seed) {
+        this.seed = seed;
+        this.seeded = true;
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+
+    public int rosterSize() { return users.size(); }
+    public int drawnCount() { return drawn.usedCount(); }
+    public int eligibleCount() { return drawn.eligibleCount(); }
+
+    // True when nobody is left to draw under these settings
+    public boolean isExhausted(boolean repeatAllowed) {
+        return weighted ? weightedPool(repeatAllowed).isEmpty() : pool(repeatAllowed).isEmpty();
+    }
+
+    // Read-only view of the roster without copying it; valid until the roster is replaced
+    public List<User> getUsers() {
+        return Collections.unmodifiableList(users);
+    }
+
+    public Roster getRoster() {
+        return users;
+    }
+
+    // Draw up to count distinct winners. Without repeats, winners are excluded from
+    // every later round.
+    public DrawRound draw(int count, boolean repeatAllowed) {
+        int picked = seeded ? pickSeeded(count, repeatAllowed) : pick(count, repeatAllowed);
+        markDrawn(picked, repeatAllowed);
+        DrawRound round = new DrawRound(rounds.size() + 1, LocalDateTime.now(), repeatAllowed, winners(0, picked));
+        record(new Batch(epochMillis(round.getDrawTime()), repeatAllowed, weighted, seed, seeded ? count : -1),
+                Collections.singletonList(round), Collections.singletonList(Arrays.copyOf(picks, picked)), true);
+        return round;
+    }
+
+    // Draw every tier of the plan in one pass: all winners are picked together, so nobody
+    // wins two tiers, then handed out to the tiers in plan order. Returns one round per
+    // tier; later tiers come up short when the pool runs out.
+    public List<DrawRound> drawPlan(PrizePlan plan, boolean repeatAllowed) {
+        int picked = seeded ? pickSeeded(plan.totalCount(), repeatAllowed) : pick(plan.totalCount(), repeatAllowed);
+        markDrawn(picked, repeatAllowed);
+        LocalDateTime now = LocalDateTime.now();
+        List<DrawRound> batch = new ArrayList<>(plan.getTiers().size());
+        List<int[]> slices = new ArrayList<>(plan.getTiers().size());
+        int from = 0;
+        for (PrizePlan.Tier tier : plan.getTiers()) {
+            int to = Math.min(picked, from + tier.getCount());
+            DrawRound round = new DrawRound(rounds.size() + batch.size() + 1, now, repeatAllowed, winners(from, to), tier.getName());
+            batch.add(round);
+            slices.add(Arrays.copyOfRange(picks, from, to));
+            from = to;
+        }
+        record(new Batch(epochMillis(now), repeatAllowed, weighted, seed, seeded ? plan.totalCount() : -1),
+                batch, slices, true);
+        return lastBatch;
+    }
+
+    // Rounds produced by the latest draw() or drawPlan()
+    public List<DrawRound> getLastBatch() {
+        return lastBatch;
+    }
+
+    private static long epochMillis(LocalDateTime time) {
+        return time.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+
+    private List<User> winners(int from, int to) {
+        List<User> winners = new ArrayList<>(to - from);
+        for (int i = from; i < to; i++) {
+            winners.add(users.get(picks[i]));
+        }
+        return winners;
+    }
+
+    // If repeats are not allowed across rounds, mark picks[0..picked) as used globally
+    private void markDrawn(int picked, boolean repeatAllowed) {
+        if (repeatAllowed) return;
+        for (int i = 0; i < picked; i++) {
+            drawn.mark(picks[i]);
+            eligible.remove(picks[i]);
+            if (weightedEligible != null) weightedEligible.remove(picks[i]);
+            if (uniformEligible != null) uniformEligible.remove(picks[i]);
+        }
+    }
+
+    // Write up to count distinct random roster indices into `into` for display and return
+    // how many were written; changes no state
+    public int sample(int count, boolean repeatAllowed, int[] into) {
+        int picked = Math.min(pick(count, repeatAllowed), into.length);
+        System.arraycopy(picks, 0, into, 0, picked);
+        return picked;
+    }
+
+    public List<DrawRound> getRounds() {
+        return Collections.unmodifiableList(rounds);
+    }
+
+    public DrawRound getLastRound() {
+        return rounds.isEmpty() ? null : rounds.get(rounds.size() - 1);
+    }
+
+    // Fill picks[0..] with up to count distinct roster indices and return how many
+    private int pick(int count, boolean repeatAllowed) {
+        if (weighted) {
+            return weightedPool(repeatAllowed).sample(count, random, ensurePicks(Math.min(count, users.size())));
+        }
+        EligiblePool pool = pool(repeatAllowed);
+        return pool.sample(count, random, ensurePicks(Math.min(count, pool.size())));
+    }
+
+    // As pick(), but from the stream of the next round under the event seed and the
+    // canonical pools, so DrawVerifier gets the same picks from the same drawn state
+    private int pickSeeded(int count, boolean repeatAllowed) {
+        SplittableRandom stream = DrawSeed.stream(seed, rounds.size() + 1);
+        WeightedPool pool = weighted ? weightedPool(repeatAllowed) : uniformPool(repeatAllowed);
+        return pool.sample(count, stream, ensurePicks(Math.min(count, users.size())));
+    }
+
+    private EligiblePool pool(boolean repeatAllowed) {
+        return repeatAllowed ? everyone : eligible;
+    }
+
+    private WeightedPool weightedPool(boolean repeatAllowed) {
+        if (repeatAllowed) {
+            if (weightedEveryone == null) {
+                weightedEveryone = new WeightedPool();
+                weightedEveryone.reset(users, null);
+            }
+            return weightedEveryone;
+        }
+        if (weightedEligible == null) {
+            weightedEligible = new WeightedPool();
+            weightedEligible.reset(users, drawn);
+        }
+        return weightedEligible;
+    }
+
+    private WeightedPool uniformPool(boolean repeatAllowed) {
+        if (repeatAllowed) {
+            if (uniformEveryone == null) {
+                uniformEveryone = new WeightedPool();
+                uniformEveryone.reset(users, null, true);
+            }
+            return uniformEveryone;
+        }
+        if (uniformEligible == null) {
+            uniformEligible = new WeightedPool();
+            uniformEligible.reset(users, drawn, true);
+        }
+        return uniformEligible;
+    }
+
+    // Grow the pick buffer only when the requested count outgrows it
+    private int[] ensurePicks(int needed) {
+        if (picks.length < needed) {
+            picks = new int[needed];
+        }
+        return picks;
+    }
+
+    // Settings of one draw() or drawPlan() call; requested is the number of winners asked
+    // for, or -1 if the draw was not seeded
+    private static final class Batch {
+        final long epochMillis;
+        final boolean repeatAllowed;
+        final boolean weighted;
+        final long seed;
+        final int requested;
+
+        Batch(long epochMillis, boolean repeatAllowed, boolean weighted, long seed, int requested) {
+            this.epochMillis = epochMillis;
+            this.repeatAllowed = repeatAllowed;
+            this.weighted = weighted;
+            this.seed = seed;
+            this.requested = requested;
+        }
+    }
+}
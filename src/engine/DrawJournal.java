@@ -0,0 +1,456 @@
+package engine;
+
+import metrics.Counter;
+import metrics.Histogram;
+import metrics.Metrics;
+import model.RosterDiff;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.zip.CRC32;
+
+// Append-only, checksummed log of every draw, so a crash mid-event does not make the
+// winners eligible again.
+// File: "LOTJ" magic and version, then records of [payload length][CRC32][payload].
+// A SESSION record starts a new roster (its fingerprint and size); a BATCH record holds
+// one draw() or drawPlan() call: settings and the winners' roster indices per round, plus
+// for seeded draws the seed and the number of winners asked for, so the draw can be re-run
+// and checked (DrawVerifier). Version 2 added the seeded fields; version 1 files are read
+// as they are and upgraded in place.
+// A REMAP record moves the session to a reloaded roster (late registrations, edits): it
+// holds the new fingerprint and size and which old indices moved where, as runs, so its
+// size follows the number of edits rather than the draw history. On open the recorded
+// winners are carried over to the new indices.
+// Records are encoded on the caller's thread and written by one background thread that
+// drains everything queued, writes it in one go and forces it to disk once (group
+// commit), so the FX thread never waits on fsync. On open, a torn or corrupt tail left
+// by a crash is cut off at the last intact record.
+public final class DrawJournal implements Closeable {
+    private static final int MAGIC = 0x4C4F544A;
+    private static final int VERSION = 2;
+    private static final int HEADER_BYTES = 8;
+    private static final byte SESSION = 1;
+    private static final byte BATCH = 2;
+    private static final byte REMAP = 3;
+    private static final int FLAG_REPEAT = 1;
+    private static final int FLAG_WEIGHTED = 2;
+    private static final int FLAG_SEEDED = 4;
+    // Larger lengths can only come from a corrupt record
+    private static final int MAX_RECORD = 64 << 20;
+    private static final ByteBuffer STOP = ByteBuffer.allocate(0);
+    private static final Histogram COMMIT = Metrics.histogram("journal.groupCommit");
+    private static final Counter RECORDS = Metrics.counter("journal.records");
+
+    private final File file;
+    private final FileChannel channel;
+    private final LinkedBlockingQueue<ByteBuffer> queue = new LinkedBlockingQueue<>();
+    private final Thread writer;
+    // Records handed to the writer, and records durably on disk; guarded by this
+    private long queued;
+    private long written;
+    private volatile boolean failed;
+    // Opened with read(): nothing is written, not even a repaired tail
+    private final boolean readOnly;
+
+    // What the file held when opened: the last session and its batches
+    private boolean hasSession;
+    private long sessionFingerprint;
+    private int sessionSize;
+    private final List<Batch> recovered = new ArrayList<>();
+    private int recoveredRecords;
+    private long discardedBytes;
+
+    private DrawJournal(File file, FileChannel channel, boolean readOnly) {
+        this.file = file;
+        this.channel = channel;
+        this.readOnly = readOnly;
+        this.writer = new Thread(this::writeLoop, "draw-journal");
+        this.writer.setDaemon(true);
+    }
+
+    // Open or create the journal and read back what it holds
+    public static DrawJournal open(File file) throws IOException {
+        File dir = file.getAbsoluteFile().getParentFile();
+        if (dir != null && !dir.exists()) dir.mkdirs();
+        FileChannel channel = FileChannel.open(file.toPath(),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        DrawJournal journal = new DrawJournal(file, channel, false);
+        try {
+            journal.recover();
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+        journal.writer.start();
+        return journal;
+    }
+
+    // Read a journal without changing it, e.g. to verify the draws of another machine's
+    // event; a torn tail is skipped but left in place, and nothing can be appended
+    public static DrawJournal read(File file) throws IOException {
+        FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        DrawJournal journal = new DrawJournal(file, channel, true);
+        try {
+            journal.recover();
+        } finally {
+            channel.close();
+        }
+        return journal;
+    }
+
+    private void recover() throws IOException {
+        long size = channel.size();
+        if (size < HEADER_BYTES && readOnly) {
+            throw new IOException("不是有效的抽奖日志: " + file);
+        }
+        if (size < HEADER_BYTES) {
+            // New (or a crash before the header made it out)
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).putInt(MAGIC).putInt(VERSION);
+            header.flip();
+            channel.truncate(0);
+            channel.write(header, 0);
+            channel.force(true);
+            channel.position(HEADER_BYTES);
+            return;
+        }
+        if (size > Integer.MAX_VALUE) throw new IOException("抽奖日志过大: " + file);
+        ByteBuffer buf = ByteBuffer.allocate((int) size);
+        while (buf.hasRemaining() && channel.read(buf, buf.position()) >= 0) { }
+        buf.flip();
+        int version = buf.getInt() == MAGIC ? buf.getInt() : -1;
+        if (version < 1 || version > VERSION) {
+            throw new IOException("不是有效的抽奖日志: " + file);
+        }
+
+        CRC32 crc = new CRC32();
+        long good = HEADER_BYTES;
+        while (buf.remaining() >= 8) {
+            int len = buf.getInt();
+            int sum = buf.getInt();
+            if (len <= 0 || len > MAX_RECORD || len > buf.remaining()) break;
+            ByteBuffer payload = buf.slice();
+            payload.limit(len);
+            crc.reset();
+            crc.update(payload.duplicate());
+            if ((int) crc.getValue() != sum) break;
+            if (!apply(payload)) break;
+            buf.position(buf.position() + len);
+            good = buf.position();
+            recoveredRecords++;
+        }
+        discardedBytes = size - good;
+        if (readOnly) return;
+        if (discardedBytes > 0) {
+            channel.truncate(good);
+        }
+        // Older programs would misread seeded batches as a torn tail and cut them off; the
+        // new version number makes them refuse the file instead
+        if (version < VERSION) {
+            channel.write(ByteBuffer.allocate(4).putInt(0, VERSION), 4);
+        }
+        if (discardedBytes > 0 || version < VERSION) {
+            channel.force(true);
+        }
+        channel.position(good);
+    }
+
+    // Decode one intact record; false if it does not parse (treated as the torn tail)
+    private boolean apply(ByteBuffer p) {
+        try {
+            byte type = p.get();
+            if (type == SESSION) {
+                sessionFingerprint = p.getLong();
+                sessionSize = p.getInt();
+                hasSession = true;
+                recovered.clear();
+                return true;
+            }
+            if (type == REMAP) return applyRemap(p);
+            if (type != BATCH) return false;
+            long time = p.getLong();
+            int flags = p.get();
+            boolean seeded = (flags & FLAG_SEEDED) != 0;
+            long seed = seeded ? p.getLong() : 0;
+            int requested = seeded ? p.getInt() : -1;
+            int roundCount = p.getInt();
+            List<Round> rounds = new ArrayList<>(roundCount);
+            for (int r = 0; r < roundCount; r++) {
+                int number = p.getInt();
+                int tierLen = p.getInt();
+                String tier = null;
+                if (tierLen >= 0) {
+                    byte[] b = new byte[tierLen];
+                    p.get(b);
+                    tier = new String(b, StandardCharsets.UTF_8);
+                }
+                int[] winners = new int[p.getInt()];
+                p.asIntBuffer().get(winners);
+                p.position(p.position() + 4 * winners.length);
+                rounds.add(new Round(number, tier, winners));
+            }
+            recovered.add(new Batch(time, (flags & FLAG_REPEAT) != 0, (flags & FLAG_WEIGHTED) != 0,
+                    seeded, seed, requested, rounds));
+            return true;
+        } catch (RuntimeException e) {
+            return false;
+        }
+    }
+
+    // Carry the session's batches over to the indices of the roster the record moves to.
+    // Seeded draws cannot be re-run against that roster and are kept as plain history.
+    private boolean applyRemap(ByteBuffer p) {
+        long fingerprint = p.getLong();
+        int size = p.getInt();
+        int oldSize = p.getInt();
+        int runs = p.getInt();
+        if (!hasSession || oldSize != sessionSize || size < 0 || runs < 0) return false;
+        int[] oldToNew = new int[oldSize];
+        Arrays.fill(oldToNew, -1);
+        for (int r = 0; r < runs; r++) {
+            int from = p.getInt();
+            int to = p.getInt();
+            int length = p.getInt();
+            if (from < 0 || to < 0 || length < 0 || from + length > oldSize || to + length > size) return false;
+            for (int i = 0; i < length; i++) oldToNew[from + i] = to + i;
+        }
+        for (int b = 0; b < recovered.size(); b++) {
+            Batch batch = recovered.get(b);
+            List<Round> rounds = new ArrayList<>(batch.getRounds().size());
+            for (Round round : batch.getRounds()) {
+                int[] moved = Arrays.stream(round.getWinners())
+                        .map(i -> i >= 0 && i < oldSize ? oldToNew[i] : -1).filter(i -> i >= 0).toArray();
+                rounds.add(new Round(round.getNumber(), round.getTier(), moved));
+            }
+            recovered.set(b, new Batch(batch.getEpochMillis(), batch.isRepeatAllowed(), batch.isWeighted(),
+                    false, 0, -1, rounds));
+        }
+        sessionFingerprint = fingerprint;
+        sessionSize = size;
+        return true;
+    }
+
+    // True if the last recorded session is for a roster with this fingerprint and size
+    public boolean isSessionOf(long fingerprint, int size) {
+        return hasSession && sessionFingerprint == fingerprint && sessionSize == size;
+    }
+
+    // Batches of the last session found on open, oldest first
+    public List<Batch> getRecovered() {
+        return Collections.unmodifiableList(recovered);
+    }
+
+    // Bytes of a torn or corrupt tail dropped on open, 0 if the journal was intact
+    public long getDiscardedBytes() {
+        return discardedBytes;
+    }
+
+    public String describeRecovery() {
+        return String.format("抽奖日志 %s：%d 条记录，本名单 %d 次抽取%s", file.getName(), recoveredRecords,
+                recovered.size(), discardedBytes > 0 ? "，已丢弃损坏的末尾 " + discardedBytes + " 字节" : "");
+    }
+
+    // Start a new session: later batches refer to this roster's indices
+    public void appendSession(long fingerprint, int size) {
+        ByteBuffer p = ByteBuffer.allocate(13);
+        p.put(SESSION).putLong(fingerprint).putInt(size);
+        enqueue(p);
+    }
+
+    // The session's roster was reloaded as diff.getNext(): record where its entrants moved
+    public void appendRemap(RosterDiff diff) {
+        int oldSize = diff.getBase().size();
+        // Runs of consecutive old indices that moved to consecutive new ones
+        List<int[]> runs = new ArrayList<>();
+        int[] run = null;
+        for (int i = 0; i < oldSize; i++) {
+            int j = diff.remap(i);
+            if (j < 0) {
+                run = null;
+            } else if (run != null && run[1] + run[2] == j) {
+                run[2]++;
+            } else {
+                run = new int[] {i, j, 1};
+                runs.add(run);
+            }
+        }
+        ByteBuffer p = ByteBuffer.allocate(1 + 8 + 4 + 4 + 4 + 12 * runs.size());
+        p.put(REMAP).putLong(diff.getNext().fingerprint()).putInt(diff.getNext().size()).putInt(oldSize).putInt(runs.size());
+        for (int[] r : runs) p.putInt(r[0]).putInt(r[1]).putInt(r[2]);
+        enqueue(p);
+    }
+
+    // Record one draw: the settings and the winners' roster indices of each round; seeded
+    // draws (requested >= 0) also keep their seed and how many winners were asked for
+    public void appendBatch(long epochMillis, boolean repeatAllowed, boolean weighted, long seed, int requested,
+                            List<DrawRound> rounds, List<int[]> winnerIndices) {
+        boolean seeded = requested >= 0;
+        int bytes = 1 + 8 + 1 + (seeded ? 12 : 0) + 4;
+        byte[][] tiers = new byte[rounds.size()][];
+        for (int r = 0; r < rounds.size(); r++) {
+            String tier = rounds.get(r).getTier();
+            tiers[r] = tier == null ? null : tier.getBytes(StandardCharsets.UTF_8);
+            bytes += 12 + (tiers[r] == null ? 0 : tiers[r].length) + 4 * winnerIndices.get(r).length;
+        }
+        ByteBuffer p = ByteBuffer.allocate(bytes);
+        p.put(BATCH).putLong(epochMillis)
+                .put((byte) ((repeatAllowed ? FLAG_REPEAT : 0) | (weighted ? FLAG_WEIGHTED : 0) | (seeded ? FLAG_SEEDED : 0)));
+        if (seeded) {
+            p.putLong(seed).putInt(requested);
+        }
+        p.putInt(rounds.size());
+        for (int r = 0; r < rounds.size(); r++) {
+            p.putInt(rounds.get(r).getNumber());
+            if (tiers[r] == null) {
+                p.putInt(-1);
+            } else {
+                p.putInt(tiers[r].length).put(tiers[r]);
+            }
+            int[] winners = winnerIndices.get(r);
+            p.putInt(winners.length);
+            for (int w : winners) p.putInt(w);
+        }
+        enqueue(p);
+    }
+
+    private void enqueue(ByteBuffer payload) {
+        if (readOnly) throw new IllegalStateException("抽奖日志以只读方式打开");
+        if (failed) return;
+        payload.flip();
+        CRC32 crc = new CRC32();
+        crc.update(payload.duplicate());
+        ByteBuffer record = ByteBuffer.allocate(8 + payload.remaining());
+        record.putInt(payload.remaining()).putInt((int) crc.getValue()).put(payload);
+        record.flip();
+        synchronized (this) {
+            queued++;
+        }
+        queue.add(record);
+    }
+
+    private void writeLoop() {
+        List<ByteBuffer> batch = new ArrayList<>();
+        while (true) {
+            try {
+                batch.add(queue.take());
+            } catch (InterruptedException e) {
+                return;
+            }
+            queue.drainTo(batch);
+            boolean stop = batch.remove(STOP);
+            if (!batch.isEmpty()) {
+                if (!failed) {
+                    try {
+                        long start = Metrics.now();
+                        ByteBuffer[] buffers = batch.toArray(new ByteBuffer[0]);
+                        long remaining = 0;
+                        for (ByteBuffer b : buffers) remaining += b.remaining();
+                        while (remaining > 0) remaining -= channel.write(buffers);
+                        channel.force(false);
+                        COMMIT.recordSince(start);
+                        RECORDS.add(batch.size());
+                    } catch (IOException e) {
+                        failed = true;
+                        System.err.println("写入抽奖日志失败，之后的抽取将不再记录: " + e.getMessage());
+                    }
+                }
+                synchronized (this) {
+                    written += batch.size();
+                    notifyAll();
+                }
+                batch.clear();
+            }
+            if (stop) return;
+        }
+    }
+
+    // Wait until everything appended so far is on disk
+    public void flush() {
+        synchronized (this) {
+            long target = queued;
+            boolean interrupted = false;
+            while (written < target && writer.isAlive()) {
+                try {
+                    wait(100);
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            if (interrupted) Thread.currentThread().interrupt();
+        }
+    }
+
+    public boolean isFailed() {
+        return failed;
+    }
+
+    @Override
+    public void close() throws IOException {
+        flush();
+        queue.add(STOP);
+        try {
+            writer.join(1000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        channel.close();
+    }
+
+    // One draw() or drawPlan() call as recorded
+    public static final class Batch {
+        private final long epochMillis;
+        private final boolean repeatAllowed;
+        private final boolean weighted;
+        private final boolean seeded;
+        private final long seed;
+        private final int requested;
+        private final List<Round> rounds;
+
+        Batch(long epochMillis, boolean repeatAllowed, boolean weighted, boolean seeded, long seed, int requested,
+              List<Round> rounds) {
+            this.epochMillis = epochMillis;
+            this.repeatAllowed = repeatAllowed;
+            this.weighted = weighted;
+            this.seeded = seeded;
+            this.seed = seed;
+            this.requested = requested;
+            this.rounds = rounds;
+        }
+
+        public long getEpochMillis() { return epochMillis; }
+        public boolean isRepeatAllowed() { return repeatAllowed; }
+        public boolean isWeighted() { return weighted; }
+        // Drawn from DrawSeed.stream(seed, first round number); false for unseeded draws
+        public boolean isSeeded() { return seeded; }
+        public long getSeed() { return seed; }
+        // Winners asked for over all rounds of the batch; -1 unless seeded
+        public int getRequested() { return requested; }
+        public List<Round> getRounds() { return rounds; }
+    }
+
+    public static final class Round {
+        private final int number;
+        private final String tier;
+        private final int[] winners;
+
+        Round(int number, String tier, int[] winners) {
+            this.number = number;
+            this.tier = tier;
+            this.winners = winners;
+        }
+
+        public int getNumber() { return number; }
+        public String getTier() { return tier; }
+        // Roster indices of the winners, in draw order
+        public int[] getWinners() { return winners; }
+    }
+}
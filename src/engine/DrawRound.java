@@ -0,0 +1,35 @@
+package engine;
+
+import model.User;
+
+import java.time.LocalDateTime;
+import java.util.Collections;
+import java.util.List;
+
+// One completed draw: who won, when, and with which settings
+public class DrawRound {
+    private final int number;
+    private final LocalDateTime drawTime;
+    private final boolean repeatAllowed;
+    private final List<User> winners;
+    // Prize tier name when drawn from a PrizePlan, otherwise null
+    private final String tier;
+
+    public DrawRound(int number, LocalDateTime drawTime, boolean repeatAllowed, List<User> winners) {
+        this(number, drawTime, repeatAllowed, winners, null);
+    }
+
+    public DrawRound(int number, LocalDateTime drawTime, boolean repeatAllowed, List<User> winners, String tier) {
+        this.number = number;
+        this.drawTime = drawTime;
+        this.repeatAllowed = repeatAllowed;
+        this.winners = Collections.unmodifiableList(winners);
+        this.tier = tier;
+    }
+
+    public int getNumber() { return number; }
+    public LocalDateTime getDrawTime() { return drawTime; }
+    public boolean isRepeatAllowed() { return repeatAllowed; }
+    public List<User> getWinners() { return winners; }
+    public String getTier() { return tier; }
+}
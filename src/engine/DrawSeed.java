@@ -0,0 +1,49 @@
+package engine;
+
+import java.security.SecureRandom;
+import java.util.SplittableRandom;
+
+// Seeds for reproducible draws. An event seed is a 64-bit number, announced as 16 hex digits
+// and recorded in the journal with every draw. Each draw() / drawPlan() call gets its own
+// stream, keyed by the seed and the number of its first round, so any round can be re-run
+// on its own without replaying the random numbers of the rounds before it:
+//   stream = new SplittableRandom(mix64(seed + firstRound * 0x9E3779B97F4A7C15L))
+// Winners are then taken one at a time from a Fenwick tree over the eligible roster indices
+// in index order (see WeightedPool): nextLong() of the stream, reduced to [0, total weight)
+// by rejection, selects the entrant, who is set aside for the rest of the call. Only
+// SplittableRandom.nextLong() (SplitMix64) is used, so the result depends on nothing but
+// the seed, the roster and the drawn state.
+public final class DrawSeed {
+    private static final long GOLDEN_GAMMA = 0x9E3779B97F4A7C15L;
+
+    private DrawSeed() {
+    }
+
+    // A fresh, unpredictable event seed
+    public static long newSeed() {
+        return new SecureRandom().nextLong();
+    }
+
+    // The stream of the draw whose first round has this number
+    public static SplittableRandom stream(long seed, int firstRound) {
+        return new SplittableRandom(mix64(seed + firstRound * GOLDEN_GAMMA));
+    }
+
+    public static String format(long seed) {
+        return String.format("%016x", seed);
+    }
+
+    // Inverse of format(); a leading 0x is accepted
+    public static long parse(String text) {
+        String s = text.trim();
+        if (s.startsWith("0x") || s.startsWith("0X")) s = s.substring(2);
+        return Long.parseUnsignedLong(s, 16);
+    }
+
+    // Stafford's variant 13 finalizer, as used inside SplittableRandom
+    private static long mix64(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+}
@@ -0,0 +1,137 @@
+package engine;
+
+import model.Roster;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+// Audit check of a recorded event: re-runs each seeded draw of the journal's last session
+// from its seed and the drawn state before it, and compares the winners with the recorded
+// ones. Needs only the roster file and the journal, no GUI. Earlier draws are applied as
+// recorded (not as re-run), so one bad round does not make every later one fail, and a
+// single round can be checked without re-running the rounds before it. Weighted draws
+// only reproduce with the same weights as at draw time; the session fingerprint covers
+// the entrants' ids and order, not their weights.
+public final class DrawVerifier {
+    private final Roster roster;
+    private final DrawnSet drawn = new DrawnSet();
+    // Canonical pools as DrawEngine builds them for seeded draws, by weighted / repeat
+    private final WeightedPool[] pools = new WeightedPool[4];
+    private int[] picks = new int[0];
+
+    private DrawVerifier(Roster roster) {
+        this.roster = roster;
+        drawn.reset(roster.size());
+    }
+
+    // Verify every round of the journal's last session (round 0), or only the round with
+    // that number. With expectedSeed set, draws made from any other seed fail as well.
+    public static Report verify(Roster roster, DrawJournal journal, int round, Long expectedSeed) {
+        if (!journal.isSessionOf(roster.fingerprint(), roster.size())) {
+            throw new IllegalArgumentException("名单与抽奖日志中的名单不一致（编号或顺序不同）");
+        }
+        long start = System.nanoTime();
+        DrawVerifier verifier = new DrawVerifier(roster);
+        Report report = new Report();
+        for (DrawJournal.Batch batch : journal.getRecovered()) {
+            List<DrawJournal.Round> rounds = batch.getRounds();
+            if (rounds.isEmpty()) continue;
+            int first = rounds.get(0).getNumber();
+            boolean target = round == 0 || (round >= first && round < first + rounds.size());
+            if (target) {
+                verifier.check(batch, expectedSeed, report);
+            }
+            if (round != 0 && round < first + rounds.size()) break;
+            verifier.apply(batch);
+        }
+        report.elapsedNanos = System.nanoTime() - start;
+        return report;
+    }
+
+    private void check(DrawJournal.Batch batch, Long expectedSeed, Report report) {
+        List<DrawJournal.Round> rounds = batch.getRounds();
+        if (!batch.isSeeded()) {
+            report.unseeded += rounds.size();
+            return;
+        }
+        boolean seedOk = expectedSeed == null || expectedSeed == batch.getSeed();
+        int limit = Math.min(batch.getRequested(), roster.size());
+        if (picks.length < limit) picks = new int[limit];
+        WeightedPool pool = pool(batch.isWeighted(), batch.isRepeatAllowed());
+        int picked = pool.sample(batch.getRequested(), DrawSeed.stream(batch.getSeed(), rounds.get(0).getNumber()), picks);
+        int from = 0;
+        for (int r = 0; r < rounds.size(); r++) {
+            int[] winners = rounds.get(r).getWinners();
+            boolean same = seedOk && from + winners.length <= picked;
+            for (int i = 0; same && i < winners.length; i++) {
+                same = winners[i] == picks[from + i];
+            }
+            from += winners.length;
+            // Fewer winners recorded than the draw produces: someone was left out
+            if (r == rounds.size() - 1 && from != picked) same = false;
+            if (same) {
+                report.matched++;
+            } else {
+                report.mismatched.add(rounds.get(r).getNumber());
+            }
+        }
+    }
+
+    // Take the recorded winners out of the pools, as the engine did after the draw
+    private void apply(DrawJournal.Batch batch) {
+        if (batch.isRepeatAllowed()) return;
+        for (DrawJournal.Round r : batch.getRounds()) {
+            for (int index : r.getWinners()) {
+                if (index < 0 || index >= roster.size() || !drawn.mark(index)) continue;
+                if (pools[0] != null) pools[0].remove(index);
+                if (pools[2] != null) pools[2].remove(index);
+            }
+        }
+    }
+
+    private WeightedPool pool(boolean weighted, boolean repeatAllowed) {
+        int slot = (weighted ? 2 : 0) + (repeatAllowed ? 1 : 0);
+        if (pools[slot] == null) {
+            pools[slot] = new WeightedPool();
+            pools[slot].reset(roster, repeatAllowed ? null : drawn, !weighted);
+        }
+        return pools[slot];
+    }
+
+    // Outcome of a verification, by round
+    public static final class Report {
+        private int matched;
+        private int unseeded;
+        private final List<Integer> mismatched = new ArrayList<>();
+        private long elapsedNanos;
+
+        // Rounds re-run with identical winners
+        public int getMatched() { return matched; }
+        // Rounds drawn without a seed, which cannot be re-run
+        public int getUnseeded() { return unseeded; }
+        // Numbers of the rounds whose winners differ from the re-run
+        public List<Integer> getMismatched() { return Collections.unmodifiableList(mismatched); }
+        public long getElapsedNanos() { return elapsedNanos; }
+
+        // True if something was checked and every checked round matched
+        public boolean isOk() {
+            return matched > 0 && mismatched.isEmpty();
+        }
+
+        public String describe() {
+            StringBuilder sb = new StringBuilder(String.format("复核 %d 轮：%d 轮一致，%d 轮不一致",
+                    matched + mismatched.size() + unseeded, matched, mismatched.size()));
+            if (unseeded > 0) sb.append("，").append(unseeded).append(" 轮未使用随机种子，无法复核");
+            sb.append(String.format("，用时 %.1f ms", elapsedNanos / 1e6));
+            if (!mismatched.isEmpty()) {
+                sb.append("\n不一致的轮次: ");
+                for (int i = 0; i < Math.min(mismatched.size(), 20); i++) {
+                    sb.append(i == 0 ? "" : ", ").append(mismatched.get(i));
+                }
+                if (mismatched.size() > 20) sb.append(" …");
+            }
+            return sb.toString();
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package engine;
+
+import java.util.Arrays;
+
+// "Already drawn" flags keyed by dense roster index.
+// Backed by a long[] bitset with a running count, so membership tests touch one word and
+// the used/eligible totals are O(1) instead of a BitSet cardinality scan.
+final class DrawnSet {
+    private long[] words = new long[0];
+    private int capacity;
+    private int used;
+
+    void reset(int n) {
+        int needed = (n + 63) >>> 6;
+        if (words.length != needed) {
+            words = new long[needed];
+        } else {
+            Arrays.fill(words, 0L);
+        }
+        capacity = n;
+        used = 0;
+    }
+
+    boolean isDrawn(int index) {
+        return (words[index >>> 6] & (1L << index)) != 0;
+    }
+
+    // Returns true when the index was not drawn before
+    boolean mark(int index) {
+        int w = index >>> 6;
+        long bit = 1L << index;
+        if ((words[w] & bit) != 0) return false;
+        words[w] |= bit;
+        used++;
+        return true;
+    }
+
+    int usedCount() { return used; }
+
+    int eligibleCount() { return capacity - used; }
+
+    int capacity() { return capacity; }
+}
@@ -0,0 +1,84 @@
+package engine;
+
+import java.util.random.RandomGenerator;
+
+// Pool of roster indices that can still be drawn.
+// Members occupy the prefix [0, size) of `items`; `slot` maps a roster index back to its
+// position (or -1 once removed) so a winner is taken out with an O(1) swap-remove.
+// Sampling is a partial Fisher–Yates shuffle of that prefix: picking k members costs O(k)
+// and allocates nothing.
+final class EligiblePool {
+    private int[] items = new int[0];
+    private int[] slot = new int[0];
+    private int size;
+
+    // Refill the pool with every index of a roster of size n
+    void reset(int n) {
+        if (items.length != n) {
+            items = new int[n];
+            slot = new int[n];
+        }
+        for (int i = 0; i < n; i++) {
+            items[i] = i;
+            slot[i] = i;
+        }
+        size = n;
+    }
+
+    // Refill with every index of a roster of size n that is not flagged in drawn; one
+    // sequential pass, cheaper than removing many winners one by one
+    void reset(int n, DrawnSet drawn) {
+        if (items.length != n) {
+            items = new int[n];
+            slot = new int[n];
+        }
+        size = 0;
+        for (int i = 0; i < n; i++) {
+            if (drawn.isDrawn(i)) {
+                slot[i] = -1;
+            } else {
+                items[size] = i;
+                slot[i] = size++;
+            }
+        }
+        // Removed members sit after the prefix, as remove() leaves them
+        int tail = size;
+        for (int i = 0; i < n; i++) {
+            if (slot[i] < 0) items[tail++] = i;
+        }
+    }
+
+    int size() { return size; }
+
+    boolean isEmpty() { return size == 0; }
+
+    boolean contains(int index) {
+        return index >= 0 && index < slot.length && slot[index] >= 0;
+    }
+
+    void remove(int index) {
+        if (!contains(index)) return;
+        int pos = slot[index];
+        int last = items[--size];
+        items[pos] = last;
+        slot[last] = pos;
+        items[size] = index;
+        slot[index] = -1;
+    }
+
+    // Write up to k distinct members into out[0..] and return how many were written.
+    // The members stay in the pool; only their order inside it changes.
+    int sample(int k, RandomGenerator random, int[] out) {
+        int picks = Math.min(Math.min(k, size), out.length);
+        for (int i = 0; i < picks; i++) {
+            int j = i + random.nextInt(size - i);
+            int chosen = items[j];
+            items[j] = items[i];
+            slot[items[j]] = j;
+            items[i] = chosen;
+            slot[chosen] = i;
+            out[i] = chosen;
+        }
+        return Math.max(picks, 0);
+    }
+}
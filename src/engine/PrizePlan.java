@@ -0,0 +1,68 @@
+package engine;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+// Prize tiers drawn together in one pass, e.g. 特等奖 x1, 一等奖 x10, 三等奖 x200.
+// Tiers are listed from the top prize down.
+public class PrizePlan {
+    private final List<Tier> tiers;
+
+    public PrizePlan(List<Tier> tiers) {
+        this.tiers = Collections.unmodifiableList(new ArrayList<>(tiers));
+    }
+
+    // One tier per line or comma, written as 名称:人数 (a full-width colon works too)
+    public static PrizePlan parse(String text) {
+        List<Tier> tiers = new ArrayList<>();
+        for (String entry : text.split("[\\r\\n,，]+")) {
+            String e = entry.trim();
+            if (e.isEmpty()) continue;
+            int sep = Math.max(e.lastIndexOf(':'), e.lastIndexOf('：'));
+            if (sep <= 0) throw new IllegalArgumentException("奖项格式应为 名称:人数 —— " + e);
+            String name = e.substring(0, sep).trim();
+            int count;
+            try {
+                count = Integer.parseInt(e.substring(sep + 1).trim());
+            } catch (NumberFormatException ex) {
+                throw new IllegalArgumentException("人数不是整数 —— " + e);
+            }
+            if (name.isEmpty() || count <= 0) throw new IllegalArgumentException("奖项名称不能为空且人数须大于 0 —— " + e);
+            tiers.add(new Tier(name, count));
+        }
+        if (tiers.isEmpty()) throw new IllegalArgumentException("奖项方案为空");
+        return new PrizePlan(tiers);
+    }
+
+    public List<Tier> getTiers() { return tiers; }
+
+    public int totalCount() {
+        int total = 0;
+        for (Tier t : tiers) total += t.getCount();
+        return total;
+    }
+
+    // Same notation parse() accepts
+    public String format() {
+        StringBuilder sb = new StringBuilder();
+        for (Tier t : tiers) {
+            if (sb.length() > 0) sb.append('\n');
+            sb.append(t.getName()).append(':').append(t.getCount());
+        }
+        return sb.toString();
+    }
+
+    public static class Tier {
+        private final String name;
+        private final int count;
+
+        public Tier(String name, int count) {
+            this.name = name;
+            this.count = count;
+        }
+
+        public String getName() { return name; }
+        public int getCount() { return count; }
+    }
+}
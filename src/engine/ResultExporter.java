@@ -0,0 +1,279 @@
+package engine;
+
+import model.User;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+
+// Streams draw results to CSV or JSON Lines, for anything from one round to the whole
+// event history. Fields are escaped and UTF-8 encoded in a single pass straight into a
+// 1 MB byte buffer that goes out in large FileChannel writes; per-round values (number,
+// tier, time) are encoded once per round. UI-free and safe to run on a background
+// thread: rounds and rosters are immutable.
+public final class ResultExporter {
+    public enum Format { CSV, JSON_LINES }
+
+    // Called every few thousand rows and once at the end, on the exporting thread
+    public interface Progress {
+        void update(long rowsDone, long rowsTotal);
+    }
+
+    private static final int BUFFER_SIZE = 1 << 20;
+    private static final int PROGRESS_EVERY = 4096;
+    private static final DateTimeFormatter TIME_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+    private static final byte[] HEX = "0123456789abcdef".getBytes(StandardCharsets.US_ASCII);
+
+    private final Format format;
+    // Lead each row with the round number (history export); off for a single draw
+    private final boolean withRound;
+    private final byte[] newline;
+
+    private byte[] out = new byte[BUFFER_SIZE];
+    private int pos;
+    private FileChannel channel;
+
+    public ResultExporter(Format format, boolean withRound) {
+        this.format = format;
+        this.withRound = withRound;
+        this.newline = (format == Format.CSV ? System.lineSeparator() : "\n").getBytes(StandardCharsets.US_ASCII);
+    }
+
+    // Write every winner of the given rounds to file and return the number of rows.
+    // Stops with InterruptedIOException if the thread is interrupted. On any failure the
+    // partial file is deleted here, once the channel is closed, so nothing can race the
+    // writer for it.
+    public long export(List<DrawRound> rounds, File file, Progress progress) throws IOException {
+        boolean withTier = false;
+        long total = 0;
+        for (DrawRound r : rounds) {
+            withTier |= r.getTier() != null;
+            total += r.getWinners().size();
+        }
+
+        long done = 0;
+        boolean opened = false;
+        boolean complete = false;
+        try (FileChannel ch = FileChannel.open(file.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            opened = true;
+            channel = ch;
+            pos = 0;
+            if (format == Format.CSV) {
+                // UTF-8 BOM for Excel compatibility on Windows
+                String header = (withRound ? "轮次," : "") + (withTier ? "奖项," : "") + CsvExport.HEADER;
+                ascii(new byte[] { (byte) 0xEF, (byte) 0xBB, (byte) 0xBF });
+                ascii(header.getBytes(StandardCharsets.UTF_8));
+                ascii(newline);
+            }
+            for (DrawRound round : rounds) {
+                byte[] prefix = rowPrefix(round, withTier);
+                byte[] time = round.getDrawTime().format(TIME_FORMAT).getBytes(StandardCharsets.US_ASCII);
+                for (User u : round.getWinners()) {
+                    if (format == Format.CSV) {
+                        csvRow(prefix, u, time);
+                    } else {
+                        jsonRow(prefix, u, time);
+                    }
+                    if (++done % PROGRESS_EVERY == 0) {
+                        if (Thread.currentThread().isInterrupted()) throw new InterruptedIOException("导出已取消");
+                        if (progress != null) progress.update(done, total);
+                    }
+                }
+            }
+            drain();
+            ch.force(false);
+            complete = true;
+        } finally {
+            channel = null;
+            if (out.length > BUFFER_SIZE) out = new byte[BUFFER_SIZE];
+            // A file that could not even be opened was not touched
+            if (opened && !complete) file.delete();
+        }
+        if (progress != null) progress.update(done, total);
+        return done;
+    }
+
+    // Encoded columns shared by every row of a round
+    private byte[] rowPrefix(DrawRound round, boolean withTier) throws IOException {
+        // Room for all of it up front, so nothing is flushed halfway
+        reserve(64 + 6 * (round.getTier() == null ? 0 : round.getTier().length()));
+        int mark = pos;
+        if (format == Format.CSV) {
+            if (withRound) {
+                number(round.getNumber());
+                put((byte) ',');
+            }
+            if (withTier) {
+                csv(round.getTier());
+                put((byte) ',');
+            }
+        } else {
+            put((byte) '{');
+            if (withRound) {
+                ascii("\"round\":");
+                number(round.getNumber());
+                put((byte) ',');
+            }
+            if (round.getTier() != null) {
+                ascii("\"tier\":");
+                json(round.getTier());
+                put((byte) ',');
+            }
+        }
+        byte[] prefix = new byte[pos - mark];
+        System.arraycopy(out, mark, prefix, 0, prefix.length);
+        pos = mark;
+        return prefix;
+    }
+
+    private void csvRow(byte[] prefix, User u, byte[] time) throws IOException {
+        ascii(prefix);
+        csv(u.getId());
+        put((byte) ',');
+        csv(u.getName());
+        put((byte) ',');
+        csv(u.getPhotoPath());
+        put((byte) ',');
+        ascii(time);
+        ascii(newline);
+    }
+
+    private void jsonRow(byte[] prefix, User u, byte[] time) throws IOException {
+        ascii(prefix);
+        ascii("\"id\":");
+        json(u.getId());
+        ascii(",\"name\":");
+        json(u.getName());
+        ascii(",\"photo\":");
+        json(u.getPhotoPath());
+        ascii(",\"time\":\"");
+        ascii(time);
+        ascii("\"}");
+        ascii(newline);
+    }
+
+    // CSV field in one pass: bytes go out as they are until the first comma, quote or line
+    // break, at which point what was written is shifted right once to open the quotes
+    private void csv(String s) throws IOException {
+        if (s == null) return;
+        reserve(3 * s.length() + 2);
+        int start = pos;
+        boolean quoted = false;
+        for (int i = 0, n = s.length(); i < n; i++) {
+            char c = s.charAt(i);
+            if (c < 0x80) {
+                if (c == ',' || c == '"' || c == '\n' || c == '\r') {
+                    if (!quoted) {
+                        System.arraycopy(out, start, out, start + 1, pos - start);
+                        out[start] = '"';
+                        pos++;
+                        quoted = true;
+                    }
+                    if (c == '"') out[pos++] = '"';
+                }
+                out[pos++] = (byte) c;
+            } else {
+                i = utf8(s, i, c);
+            }
+        }
+        if (quoted) out[pos++] = '"';
+    }
+
+    private void json(String s) throws IOException {
+        if (s == null) {
+            ascii("null");
+            return;
+        }
+        reserve(6 * s.length() + 2);
+        out[pos++] = '"';
+        for (int i = 0, n = s.length(); i < n; i++) {
+            char c = s.charAt(i);
+            if (c >= 0x80) {
+                i = utf8(s, i, c);
+            } else if (c == '"' || c == '\\') {
+                out[pos++] = '\\';
+                out[pos++] = (byte) c;
+            } else if (c >= 0x20) {
+                out[pos++] = (byte) c;
+            } else if (c == '\n') {
+                out[pos++] = '\\';
+                out[pos++] = 'n';
+            } else if (c == '\r') {
+                out[pos++] = '\\';
+                out[pos++] = 'r';
+            } else if (c == '\t') {
+                out[pos++] = '\\';
+                out[pos++] = 't';
+            } else {
+                out[pos++] = '\\';
+                out[pos++] = 'u';
+                out[pos++] = '0';
+                out[pos++] = '0';
+                out[pos++] = HEX[c >> 4];
+                out[pos++] = HEX[c & 0xF];
+            }
+        }
+        out[pos++] = '"';
+    }
+
+    // Encode the non-ASCII char at s[i]; returns the index of the last char consumed
+    private int utf8(String s, int i, char c) {
+        if (c < 0x800) {
+            out[pos++] = (byte) (0xC0 | (c >> 6));
+            out[pos++] = (byte) (0x80 | (c & 0x3F));
+        } else if (Character.isHighSurrogate(c) && i + 1 < s.length() && Character.isLowSurrogate(s.charAt(i + 1))) {
+            int cp = Character.toCodePoint(c, s.charAt(++i));
+            out[pos++] = (byte) (0xF0 | (cp >> 18));
+            out[pos++] = (byte) (0x80 | ((cp >> 12) & 0x3F));
+            out[pos++] = (byte) (0x80 | ((cp >> 6) & 0x3F));
+            out[pos++] = (byte) (0x80 | (cp & 0x3F));
+        } else if (Character.isSurrogate(c)) {
+            out[pos++] = '?';
+        } else {
+            out[pos++] = (byte) (0xE0 | (c >> 12));
+            out[pos++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+            out[pos++] = (byte) (0x80 | (c & 0x3F));
+        }
+        return i;
+    }
+
+    private void number(int n) throws IOException {
+        ascii(Integer.toString(n));
+    }
+
+    private void ascii(String s) throws IOException {
+        reserve(s.length());
+        for (int i = 0, n = s.length(); i < n; i++) out[pos++] = (byte) s.charAt(i);
+    }
+
+    private void ascii(byte[] b) throws IOException {
+        reserve(b.length);
+        System.arraycopy(b, 0, out, pos, b.length);
+        pos += b.length;
+    }
+
+    private void put(byte b) throws IOException {
+        reserve(1);
+        out[pos++] = b;
+    }
+
+    // Make room for n more bytes, flushing the buffer (or growing it for a huge field)
+    private void reserve(int n) throws IOException {
+        if (pos + n <= out.length) return;
+        drain();
+        if (n > out.length) out = new byte[n];
+    }
+
+    private void drain() throws IOException {
+        ByteBuffer b = ByteBuffer.wrap(out, 0, pos);
+        while (b.hasRemaining()) channel.write(b);
+        pos = 0;
+    }
+}
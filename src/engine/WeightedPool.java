@@ -0,0 +1,117 @@
+package engine;
+
+import model.Roster;
+
+import java.util.random.RandomGenerator;
+
+// Weighted sampling without replacement over roster indices.
+// A Fenwick tree over fixed-point weights (1/1000 resolution, so sums are exact and never
+// drift): a pick is one descent of the tree, and removing a winner is one point update,
+// both O(log n). Frames pick k distinct entrants by zeroing each pick and restoring
+// them afterwards, which costs O(k log n) and allocates nothing once the buffers fit.
+// The tree depends only on the weights, never on earlier picks, so a given stream always
+// yields the same winners; seeded draws rely on this (with unit weights for uniform mode).
+final class WeightedPool {
+    private static final double SCALE = 1000.0;
+
+    private long[] tree = new long[1];
+    private long[] weight = new long[0];
+    private long[] saved = new long[0];
+    private int n;
+    private int topBit;
+    private long total;
+
+    // Load the roster's weights; entrants flagged in drawn (if given) start at zero
+    void reset(Roster roster, DrawnSet drawn) {
+        reset(roster, drawn, false);
+    }
+
+    // As reset(roster, drawn), but with uniform gives every entrant the same weight
+    void reset(Roster roster, DrawnSet drawn, boolean uniform) {
+        n = roster.size();
+        if (weight.length != n) {
+            weight = new long[n];
+            tree = new long[n + 1];
+        }
+        for (int i = 0; i < n; i++) {
+            boolean excluded = drawn != null && drawn.isDrawn(i);
+            weight[i] = excluded ? 0 : uniform ? 1 : fixedPoint(roster.getWeight(i));
+            tree[i + 1] = weight[i];
+        }
+        tree[0] = 0;
+        // O(n) bottom-up build
+        for (int i = 1; i <= n; i++) {
+            int parent = i + (i & -i);
+            if (parent <= n) tree[parent] += tree[i];
+        }
+        topBit = n == 0 ? 0 : Integer.highestOneBit(n);
+        // The loader caps weights so this cannot overflow; a roster built some other way
+        // fails here rather than wrapping into a wrong (or negative) total
+        total = 0;
+        for (int i = 0; i < n; i++) total = Math.addExact(total, weight[i]);
+    }
+
+    // A positive weight never rounds down to zero: below 0.0005 it counts as one unit
+    // (0.001), so the entrant stays drawable, just very unlikely
+    private static long fixedPoint(double w) {
+        return w > 0 ? Math.max(1, Math.round(w * SCALE)) : 0;
+    }
+
+    boolean isEmpty() { return total == 0; }
+
+    // Permanently take an entrant out (it won without repeats)
+    void remove(int index) {
+        set(index, 0);
+    }
+
+    // Write up to k distinct weighted picks into out[0..] and return how many were written.
+    // The pool is unchanged afterwards.
+    int sample(int k, RandomGenerator random, int[] out) {
+        int limit = Math.min(k, out.length);
+        if (saved.length < limit) saved = new long[limit];
+        int picked = 0;
+        while (picked < limit) {
+            if (total == 0) break;
+            int index = find(nextLong(random, total));
+            out[picked] = index;
+            saved[picked] = weight[index];
+            set(index, 0);
+            picked++;
+        }
+        for (int i = 0; i < picked; i++) {
+            set(out[i], saved[i]);
+        }
+        return picked;
+    }
+
+    private void set(int index, long w) {
+        long delta = w - weight[index];
+        if (delta == 0) return;
+        weight[index] = w;
+        total += delta;
+        for (int i = index + 1; i <= n; i += i & -i) tree[i] += delta;
+    }
+
+    // Smallest index whose prefix sum exceeds r
+    private int find(long r) {
+        int pos = 0;
+        for (int step = topBit; step > 0; step >>= 1) {
+            int next = pos + step;
+            if (next <= n && tree[next] <= r) {
+                pos = next;
+                r -= tree[next];
+            }
+        }
+        return pos;
+    }
+
+    // Uniform in [0, bound) without modulo bias
+    private static long nextLong(RandomGenerator random, long bound) {
+        long bits, val;
+        do {
+            bits = random.nextLong() >>> 1;
+            val = bits % bound;
+        } while (bits - val + (bound - 1) < 0);
+        return val;
+    }
+}
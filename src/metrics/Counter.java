@@ -0,0 +1,35 @@
+package metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+// Monotonic event count; a LongAdder, so contended increments stay cheap
+public final class Counter implements Metrics.CounterMXBean {
+    private final String name;
+    private final LongAdder value = new LongAdder();
+
+    Counter(String name) {
+        this.name = name;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void increment() {
+        if (Metrics.ENABLED) value.increment();
+    }
+
+    public void add(long n) {
+        if (Metrics.ENABLED) value.add(n);
+    }
+
+    @Override
+    public long getCount() {
+        return value.sum();
+    }
+
+    @Override
+    public void reset() {
+        value.reset();
+    }
+}
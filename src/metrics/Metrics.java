@@ -0,0 +1,167 @@
+package metrics;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDateTime;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.LongSupplier;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+// Process-wide registry of runtime metrics for the load, draw and render paths.
+// Metrics are created once (usually into static fields) and then only updated, which
+// allocates nothing. -Dlottery.metrics=false turns every update into a no-op.
+// Everything registered is visible over JMX under "lottery:*" once exposeJmx() was called,
+// and can be written out as JSON with dump().
+public final class Metrics {
+    public static final boolean ENABLED = !"false".equals(System.getProperty("lottery.metrics"));
+
+    public interface CounterMXBean {
+        long getCount();
+        void reset();
+    }
+
+    public interface HistogramMXBean {
+        long getCount();
+        double getMeanMillis();
+        double getP50Millis();
+        double getP90Millis();
+        double getP99Millis();
+        double getMaxMillis();
+        void reset();
+    }
+
+    public interface GaugeMXBean {
+        long getValue();
+    }
+
+    public interface RegistryMXBean {
+        boolean isEnabled();
+        // Write every metric to path as JSON and return the absolute path
+        String dumpJson(String path) throws IOException;
+        void resetAll();
+    }
+
+    private static final Map<String, Counter> COUNTERS = new ConcurrentSkipListMap<>();
+    private static final Map<String, Histogram> HISTOGRAMS = new ConcurrentSkipListMap<>();
+    private static final Map<String, LongSupplier> GAUGES = new ConcurrentSkipListMap<>();
+    private static volatile MBeanServer jmx;
+
+    private Metrics() {
+    }
+
+    // Start of a timed section for Histogram.recordSince
+    public static long now() {
+        return ENABLED ? System.nanoTime() : 0;
+    }
+
+    public static Counter counter(String name) {
+        return COUNTERS.computeIfAbsent(name, n -> register(new Counter(n), "Counter", n));
+    }
+
+    public static Histogram histogram(String name) {
+        return HISTOGRAMS.computeIfAbsent(name, n -> register(new Histogram(n), "Histogram", n));
+    }
+
+    // A value owned elsewhere (cache sizes, hit counts), read only when reported
+    public static void gauge(String name, LongSupplier value) {
+        GAUGES.put(name, value);
+        GaugeMXBean bean = value::getAsLong;
+        register(bean, "Gauge", name);
+    }
+
+    // Register the platform MBeans for everything created so far and from now on
+    public static synchronized void exposeJmx() {
+        if (jmx != null || !ENABLED) return;
+        jmx = ManagementFactory.getPlatformMBeanServer();
+        register(new Registry(), "Registry", "metrics");
+        COUNTERS.forEach((n, c) -> register(c, "Counter", n));
+        HISTOGRAMS.forEach((n, h) -> register(h, "Histogram", n));
+        GAUGES.forEach((n, g) -> register((GaugeMXBean) g::getAsLong, "Gauge", n));
+    }
+
+    private static <T> T register(T bean, String type, String name) {
+        MBeanServer server = jmx;
+        if (server == null) return bean;
+        try {
+            ObjectName id = new ObjectName("lottery:type=" + type + ",name=" + ObjectName.quote(name));
+            if (server.isRegistered(id)) server.unregisterMBean(id);
+            server.registerMBean(bean, id);
+        } catch (JMException e) {
+            System.err.println("注册 JMX 指标失败: " + name + " (" + e.getMessage() + ")");
+        }
+        return bean;
+    }
+
+    public static void resetAll() {
+        COUNTERS.values().forEach(Counter::reset);
+        HISTOGRAMS.values().forEach(Histogram::reset);
+    }
+
+    // Write a JSON snapshot of every metric; the file is replaced atomically
+    public static File dump(File file) throws IOException {
+        File target = file.getAbsoluteFile();
+        if (target.getParentFile() != null) target.getParentFile().mkdirs();
+        File tmp = new File(target.getPath() + ".tmp");
+        Files.write(tmp.toPath(), toJson().getBytes(StandardCharsets.UTF_8));
+        Files.move(tmp.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return target;
+    }
+
+    public static String toJson() {
+        StringBuilder sb = new StringBuilder(4096);
+        sb.append("{\n  \"time\": \"").append(LocalDateTime.now()).append("\",\n");
+        sb.append("  \"enabled\": ").append(ENABLED).append(",\n");
+        sb.append("  \"counters\": {");
+        String sep = "\n";
+        for (Counter c : COUNTERS.values()) {
+            sb.append(sep).append("    ").append(quote(c.getName())).append(": ").append(c.getCount());
+            sep = ",\n";
+        }
+        sb.append("\n  },\n  \"gauges\": {");
+        sep = "\n";
+        for (Map.Entry<String, LongSupplier> g : GAUGES.entrySet()) {
+            sb.append(sep).append("    ").append(quote(g.getKey())).append(": ").append(g.getValue().getAsLong());
+            sep = ",\n";
+        }
+        sb.append("\n  },\n  \"histograms\": {");
+        sep = "\n";
+        for (Histogram h : HISTOGRAMS.values()) {
+            sb.append(sep).append("    ").append(quote(h.getName()))
+                    .append(String.format(Locale.ROOT, ": {\"count\": %d, \"meanMs\": %.3f, \"p50Ms\": %.3f, \"p90Ms\": %.3f, \"p99Ms\": %.3f, \"maxMs\": %.3f}",
+                            h.getCount(), h.getMeanMillis(), h.getP50Millis(), h.getP90Millis(), h.getP99Millis(), h.getMaxMillis()));
+            sep = ",\n";
+        }
+        sb.append("\n  }\n}\n");
+        return sb.toString();
+    }
+
+    // Metric names are plain identifiers; only quotes and backslashes need escaping
+    private static String quote(String s) {
+        return "\"" + s.replace("\\", "\\\\").replace("\"", "\\\"") + "\"";
+    }
+
+    private static final class Registry implements RegistryMXBean {
+        @Override
+        public boolean isEnabled() {
+            return ENABLED;
+        }
+
+        @Override
+        public String dumpJson(String path) throws IOException {
+            return dump(new File(path)).getPath();
+        }
+
+        @Override
+        public void resetAll() {
+            Metrics.resetAll();
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package model;
+
+import metrics.Counter;
+import metrics.Metrics;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Directory listings used to resolve photo paths with hash lookups instead of File.exists().
+// Listings are keyed by lower-cased file name and by lower-cased base name + extension, and
+// shared across loads: each load re-validates a directory once against its modification
+// time and re-lists it only when that changed. Create one instance per load; it is safe to
+// use from the parallel parse workers. Names that differ only in case (A01.jpg, a01.JPG)
+// are resolved the same way on every run: an exact-case match wins, otherwise the first
+// of them in sorted order, since the order of a directory listing is not defined.
+final class PhotoIndex {
+    static final String[] EXTS = {".jpg", ".jpeg", ".png", ".bmp", ".gif", ".webp"};
+
+    private static final Map<String, Listing> SHARED = new ConcurrentHashMap<>();
+    private static final Counter LOOKUPS = Metrics.counter("roster.photoLookups");
+    private static final Counter LISTINGS = Metrics.counter("roster.photoDirListings");
+
+    // Directories already validated by this load
+    private final Map<String, Listing> validated = new ConcurrentHashMap<>();
+
+    // The existing file the path points at (exact case first, then case-insensitively), or null
+    File lookup(File f) {
+        LOOKUPS.increment();
+        File dir = f.getParentFile() != null ? f.getParentFile() : f.getAbsoluteFile().getParentFile();
+        if (dir == null) return null;
+        Listing listing = listing(dir);
+        if (listing.exact.contains(f.getName())) return new File(dir, f.getName());
+        String actual = listing.names.get(f.getName().toLowerCase(Locale.ROOT));
+        return actual != null ? new File(dir, actual) : null;
+    }
+
+    // First image in dir named after id or name, trying extensions in priority order
+    File find(File dir, String id, String name) {
+        LOOKUPS.increment();
+        Listing listing = listing(dir);
+        String[] byId = id != null && !id.isEmpty() ? listing.byBase.get(id.toLowerCase(Locale.ROOT)) : null;
+        String[] byName = name != null && !name.isEmpty() ? listing.byBase.get(name.toLowerCase(Locale.ROOT)) : null;
+        if (byId == null && byName == null) return null;
+        for (int i = 0; i < EXTS.length; i++) {
+            if (byId != null && byId[i] != null) return new File(dir, byId[i]);
+            if (byName != null && byName[i] != null) return new File(dir, byName[i]);
+        }
+        return null;
+    }
+
+    private Listing listing(File dir) {
+        String key = dir.getAbsoluteFile().toPath().normalize().toString();
+        return validated.computeIfAbsent(key, k -> {
+            long modified = dir.lastModified();
+            Listing cached = SHARED.get(k);
+            if (cached != null && cached.modified == modified) return cached;
+            LISTINGS.increment();
+            Listing fresh = new Listing(dir, modified);
+            SHARED.put(k, fresh);
+            return fresh;
+        });
+    }
+
+    private static final class Listing {
+        final long modified;
+        final Set<String> exact = new HashSet<>();
+        // lower-cased file name -> actual file name
+        final Map<String, String> names = new HashMap<>();
+        // lower-cased base name -> actual file name per entry of EXTS
+        final Map<String, String[]> byBase = new HashMap<>();
+
+        Listing(File dir, long modified) {
+            this.modified = modified;
+            String[] entries = dir.list();
+            if (entries == null) return;
+            Arrays.sort(entries);
+            for (String entry : entries) {
+                exact.add(entry);
+                String lower = entry.toLowerCase(Locale.ROOT);
+                names.putIfAbsent(lower, entry);
+                int dot = lower.lastIndexOf('.');
+                if (dot <= 0) continue;
+                String ext = lower.substring(dot);
+                for (int i = 0; i < EXTS.length; i++) {
+                    if (EXTS[i].equals(ext)) {
+                        String[] byExt = byBase.computeIfAbsent(lower.substring(0, dot), b -> new String[EXTS.length]);
+                        if (byExt[i] == null) byExt[i] = entry;
+                        break;
+                    }
+                }
+            }
+        }
+    }
+}
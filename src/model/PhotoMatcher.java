@@ -0,0 +1,206 @@
+package model;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+// Matches a folder of photos to the roster for the batch photo import.
+// The folder is walked in parallel (one fork/join task per directory). An entrant gets
+// the photo whose base name is its id or name, or else the first one (by path) whose base
+// name contains its id or name. The "contains" fallback goes through a bigram index of
+// the base names: only names sharing the query's rarest bigram are checked. UI-free;
+// run it on a background thread.
+public final class PhotoMatcher {
+    // phase: "扫描" or "匹配"; total is -1 while still unknown
+    public interface Progress {
+        void update(String phase, long done, long total);
+    }
+
+    public static final class Result {
+        private final RosterDiff diff;
+        private final int fileCount;
+        private final int matched;
+        private final List<String> unmatched;
+
+        Result(RosterDiff diff, int fileCount, int matched, List<String> unmatched) {
+            this.diff = diff;
+            this.fileCount = fileCount;
+            this.matched = matched;
+            this.unmatched = unmatched;
+        }
+
+        public RosterDiff getDiff() { return diff; }
+        public int getFileCount() { return fileCount; }
+        public int getMatched() { return matched; }
+        // "id - name" of every entrant left without a photo from the folder
+        public List<String> getUnmatched() { return unmatched; }
+    }
+
+    private static final int PROGRESS_EVERY = 1024;
+
+    // Sorted by path, so duplicates resolve the same way on every run
+    private final File[] files;
+    // Lower-cased base names, parallel to files
+    private final String[] keys;
+    private final Map<String, Integer> exact;
+    // Bigram (two chars packed in an int) -> ascending indices of the keys containing it
+    private final Map<Integer, int[]> bigrams;
+
+    private PhotoMatcher(File[] files) {
+        this.files = files;
+        this.keys = new String[files.length];
+        this.exact = new HashMap<>(files.length * 2);
+        Map<Integer, Posting> postings = new HashMap<>();
+        for (int k = 0; k < files.length; k++) {
+            String name = files[k].getName();
+            int dot = name.lastIndexOf('.');
+            String key = (dot > 0 ? name.substring(0, dot) : name).toLowerCase(Locale.ROOT);
+            keys[k] = key;
+            exact.putIfAbsent(key, k);
+            for (int i = 0; i + 1 < key.length(); i++) {
+                postings.computeIfAbsent(key.charAt(i) << 16 | key.charAt(i + 1), g -> new Posting()).add(k);
+            }
+        }
+        this.bigrams = new HashMap<>(postings.size() * 2);
+        postings.forEach((gram, p) -> bigrams.put(gram, Arrays.copyOf(p.ids, p.size)));
+    }
+
+    // Growable list of key indices, each added once
+    private static final class Posting {
+        int[] ids = new int[4];
+        int size;
+
+        void add(int k) {
+            if (size > 0 && ids[size - 1] == k) return;
+            if (size == ids.length) ids = Arrays.copyOf(ids, size * 2);
+            ids[size++] = k;
+        }
+    }
+
+    // Scan dir and give every roster entrant a matching photo; the result's diff applies it.
+    // Stops with InterruptedException if the thread is interrupted.
+    public static Result match(Roster roster, File dir, Progress progress) throws InterruptedException {
+        List<File> found = scan(dir, progress);
+        if (Thread.currentThread().isInterrupted()) throw new InterruptedException();
+        File[] files = found.toArray(new File[0]);
+        Arrays.sort(files);
+        PhotoMatcher index = new PhotoMatcher(files);
+
+        int n = roster.size();
+        int[] matches = new int[n];
+        AtomicInteger done = new AtomicInteger();
+        Thread caller = Thread.currentThread();
+        IntStream.range(0, n).parallel().forEach(i -> {
+            matches[i] = caller.isInterrupted() ? -1 : index.find(roster.getId(i), roster.getName(i));
+            int d = done.incrementAndGet();
+            if (progress != null && d % PROGRESS_EVERY == 0) progress.update("匹配", d, n);
+        });
+        if (Thread.currentThread().isInterrupted()) throw new InterruptedException();
+
+        Roster.Builder updated = new Roster.Builder(n);
+        List<String> unmatched = new ArrayList<>();
+        for (int i = 0; i < n; i++) {
+            String photo = roster.getPhotoPath(i);
+            if (matches[i] >= 0) {
+                photo = files[matches[i]].getAbsolutePath();
+            } else {
+                unmatched.add(roster.getId(i) + " - " + roster.getName(i));
+            }
+            updated.add(roster.getId(i), roster.getName(i), photo, roster.getWeight(i));
+        }
+        if (progress != null) progress.update("匹配", n, n);
+        return new Result(RosterDiff.compute(roster, updated.build()), files.length,
+                n - unmatched.size(), Collections.unmodifiableList(unmatched));
+    }
+
+    // Every image file under dir, listed by one fork/join task per directory
+    static List<File> scan(File dir, Progress progress) {
+        ConcurrentLinkedQueue<File> out = new ConcurrentLinkedQueue<>();
+        AtomicInteger count = new AtomicInteger();
+        ForkJoinPool.commonPool().invoke(new Walk(dir, out, count, progress));
+        return new ArrayList<>(out);
+    }
+
+    private static final class Walk extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final File dir;
+        private final ConcurrentLinkedQueue<File> out;
+        private final AtomicInteger count;
+        private final Progress progress;
+
+        Walk(File dir, ConcurrentLinkedQueue<File> out, AtomicInteger count, Progress progress) {
+            this.dir = dir;
+            this.out = out;
+            this.count = count;
+            this.progress = progress;
+        }
+
+        @Override
+        protected void compute() {
+            File[] entries = dir.listFiles();
+            if (entries == null) return;
+            List<Walk> subdirs = new ArrayList<>();
+            for (File f : entries) {
+                if (f.isDirectory()) {
+                    subdirs.add(new Walk(f, out, count, progress));
+                } else if (isImage(f.getName())) {
+                    out.add(f);
+                    int c = count.incrementAndGet();
+                    if (progress != null && c % PROGRESS_EVERY == 0) progress.update("扫描", c, -1);
+                }
+            }
+            invokeAll(subdirs);
+        }
+    }
+
+    private static boolean isImage(String name) {
+        String lower = name.toLowerCase(Locale.ROOT);
+        for (String ext : PhotoIndex.EXTS) {
+            if (lower.endsWith(ext)) return true;
+        }
+        return false;
+    }
+
+    // Index of the photo for this entrant, or -1
+    private int find(String id, String name) {
+        String lid = id == null ? "" : id.toLowerCase(Locale.ROOT);
+        String lname = name == null ? "" : name.toLowerCase(Locale.ROOT);
+        Integer k = lid.isEmpty() ? null : exact.get(lid);
+        if (k == null && !lname.isEmpty()) k = exact.get(lname);
+        if (k != null) return k;
+        int byId = lid.isEmpty() ? -1 : containing(lid);
+        return byId >= 0 ? byId : lname.isEmpty() ? -1 : containing(lname);
+    }
+
+    // First key (by path) that contains q
+    private int containing(String q) {
+        if (q.length() < 2) {
+            // Too short for a bigram
+            for (int k = 0; k < keys.length; k++) {
+                if (keys[k].indexOf(q) >= 0) return k;
+            }
+            return -1;
+        }
+        int[] rarest = null;
+        for (int i = 0; i + 1 < q.length(); i++) {
+            int[] list = bigrams.get(q.charAt(i) << 16 | q.charAt(i + 1));
+            if (list == null) return -1;
+            if (rarest == null || list.length < rarest.length) rarest = list;
+        }
+        for (int k : rarest) {
+            if (keys[k].contains(q)) return k;
+        }
+        return -1;
+    }
+}
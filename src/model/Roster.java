@@ -0,0 +1,399 @@
+package model;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+
+// Columnar, compact roster for very large entrant lists.
+// Ids, names and photo file names live as UTF-8 in one shared byte arena addressed by
+// start/length arrays; the directory part of each photo path is interned once. get(i)
+// builds a lightweight User view on demand, so no per-entrant objects stay on the heap.
+// Immutable once built.
+public final class Roster extends AbstractList<User> implements RandomAccess {
+    // Largest accepted draw weight. Draws sum weights in 1/1000 units as a long, so even
+    // Integer.MAX_VALUE entrants at this weight stay below Long.MAX_VALUE.
+    public static final double MAX_WEIGHT = 1_000_000;
+
+    private static final Roster EMPTY = new Builder(0).build();
+
+    private final int size;
+    private final byte[] arena;
+    private final int[] idStart, idLen;
+    private final int[] nameStart, nameLen;
+    private final int[] fileStart, fileLen;
+    // Index into dirs, or -1 when the entrant has no photo
+    private final int[] photoDir;
+    private final String[] dirs;
+    // Draw weights, or null when every entrant has the default weight 1
+    private final double[] weights;
+    // Hash of the ids in roster order, computed on first use by whichever thread asks first.
+    // fingerprint is written before the volatile flag, so a reader that sees the flag also
+    // sees the hash; threads racing on first use just compute the same value.
+    private long fingerprint;
+    private volatile boolean fingerprinted;
+
+    private Roster(Builder b) {
+        this(b.size, trim(b.arena, b.arenaSize), trim(b.idStart, b.size), trim(b.idLen, b.size),
+                trim(b.nameStart, b.size), trim(b.nameLen, b.size), trim(b.fileStart, b.size),
+                trim(b.fileLen, b.size), trim(b.photoDir, b.size), b.dirs.toArray(new String[0]),
+                b.weights == null ? null : trim(b.weights, b.size));
+    }
+
+    private Roster(int size, byte[] arena, int[] idStart, int[] idLen, int[] nameStart, int[] nameLen,
+                   int[] fileStart, int[] fileLen, int[] photoDir, String[] dirs, double[] weights) {
+        this.size = size;
+        this.arena = arena;
+        this.idStart = idStart;
+        this.idLen = idLen;
+        this.nameStart = nameStart;
+        this.nameLen = nameLen;
+        this.fileStart = fileStart;
+        this.fileLen = fileLen;
+        this.photoDir = photoDir;
+        this.dirs = dirs;
+        this.weights = weights;
+    }
+
+    // The list itself when it already is a Roster, otherwise a compact copy
+    public static Roster of(List<User> users) {
+        if (users == null) return EMPTY;
+        if (users instanceof Roster) return (Roster) users;
+        Builder b = new Builder(users.size());
+        for (User u : users) b.add(u.getId(), u.getName(), u.getPhotoPath(), u.getWeight());
+        return b.build();
+    }
+
+    @Override
+    public User get(int index) {
+        if (index < 0 || index >= size) throw new IndexOutOfBoundsException(index);
+        return new User(getId(index), getName(index), getPhotoPath(index), getWeight(index));
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    // Entrants at the given indices, built on access like get(); the array is not copied
+    public List<User> select(int[] indices) {
+        return new Selection(indices);
+    }
+
+    private final class Selection extends AbstractList<User> implements RandomAccess {
+        private final int[] indices;
+
+        Selection(int[] indices) {
+            this.indices = indices;
+        }
+
+        @Override
+        public User get(int i) {
+            return Roster.this.get(indices[i]);
+        }
+
+        @Override
+        public int size() {
+            return indices.length;
+        }
+    }
+
+    public String getId(int index) {
+        return text(idStart[index], idLen[index]);
+    }
+
+    public String getName(int index) {
+        return text(nameStart[index], nameLen[index]);
+    }
+
+    public String getPhotoPath(int index) {
+        int dir = photoDir[index];
+        if (dir < 0) return "";
+        return dirs[dir].concat(text(fileStart[index], fileLen[index]));
+    }
+
+    public double getWeight(int index) {
+        return weights == null ? 1.0 : weights[index];
+    }
+
+    public boolean hasWeights() {
+        return weights != null;
+    }
+
+    // 64-bit FNV-1a over the ids in order. Two rosters with the same fingerprint list the
+    // same entrants at the same indices, so drawn state recorded by index stays valid.
+    public long fingerprint() {
+        if (!fingerprinted) {
+            long h = 0xcbf29ce484222325L ^ size;
+            for (int i = 0; i < size; i++) {
+                for (int b = idStart[i], end = b + idLen[i]; b < end; b++) {
+                    h = (h ^ (arena[b] & 0xFF)) * 0x100000001b3L;
+                }
+                h = (h ^ 0x1F) * 0x100000001b3L;
+            }
+            fingerprint = h;
+            fingerprinted = true;
+        }
+        return fingerprint;
+    }
+
+    // Same name, photo and weight as entry j of other (ids are compared by the caller)
+    boolean sameEntry(int i, Roster other, int j) {
+        return getWeight(i) == other.getWeight(j)
+                && sameBytes(nameStart[i], nameLen[i], other, other.nameStart[j], other.nameLen[j])
+                && samePhoto(i, other, j);
+    }
+
+    boolean samePhoto(int i, Roster other, int j) {
+        int d = photoDir[i];
+        int od = other.photoDir[j];
+        if (d < 0 || od < 0) return d == od;
+        return dirs[d].equals(other.dirs[od])
+                && sameBytes(fileStart[i], fileLen[i], other, other.fileStart[j], other.fileLen[j]);
+    }
+
+    private boolean sameBytes(int start, int len, Roster other, int otherStart, int otherLen) {
+        return len == otherLen && Arrays.equals(arena, start, start + len, other.arena, otherStart, otherStart + len);
+    }
+
+    private String text(int start, int len) {
+        return len == 0 ? "" : new String(arena, start, len, StandardCharsets.UTF_8);
+    }
+
+    // Retained heap of this roster, in bytes (arrays plus interned directory strings)
+    public long estimatedBytes() {
+        long bytes = 16L + arena.length + 7L * (16L + 4L * size);
+        if (weights != null) bytes += 16L + 8L * size;
+        for (String d : dirs) bytes += 40L + d.length() * 2L;
+        return bytes;
+    }
+
+    public String memoryReport() {
+        return String.format("名单 %d 人，占用约 %.1f MB，平均每人 %.1f 字节（目录前缀 %d 个）",
+                size, estimatedBytes() / 1048576.0, size == 0 ? 0.0 : (double) estimatedBytes() / size, dirs.length);
+    }
+
+    // Directories the photos live in, each listed once
+    List<String> photoDirs() {
+        return Arrays.asList(dirs);
+    }
+
+    // Binary form used by RosterSnapshot: the columns exactly as they are in memory
+    int serializedSize() {
+        long bytes = 4L + 4L + arena.length + 7L * 4L * size + 4L + 1L;
+        for (String d : dirs) bytes += 4L + d.getBytes(StandardCharsets.UTF_8).length;
+        if (weights != null) bytes += 8L * size;
+        if (bytes > Integer.MAX_VALUE) throw new IllegalStateException("名单过大，无法写入快照");
+        return (int) bytes;
+    }
+
+    void writeTo(ByteBuffer out) {
+        out.putInt(size);
+        out.putInt(arena.length).put(arena);
+        for (int[] column : new int[][] { idStart, idLen, nameStart, nameLen, fileStart, fileLen, photoDir }) {
+            out.asIntBuffer().put(column);
+            out.position(out.position() + 4 * size);
+        }
+        out.putInt(dirs.length);
+        for (String d : dirs) {
+            byte[] b = d.getBytes(StandardCharsets.UTF_8);
+            out.putInt(b.length).put(b);
+        }
+        out.put((byte) (weights == null ? 0 : 1));
+        if (weights != null) {
+            out.asDoubleBuffer().put(weights);
+            out.position(out.position() + 8 * size);
+        }
+    }
+
+    // Inverse of writeTo, with bulk copies out of the (mapped) buffer
+    static Roster readFrom(ByteBuffer in) {
+        int size = in.getInt();
+        byte[] arena = new byte[in.getInt()];
+        in.get(arena);
+        int[][] columns = new int[7][size];
+        for (int[] column : columns) {
+            in.asIntBuffer().get(column);
+            in.position(in.position() + 4 * size);
+        }
+        String[] dirs = new String[in.getInt()];
+        for (int d = 0; d < dirs.length; d++) {
+            byte[] b = new byte[in.getInt()];
+            in.get(b);
+            dirs[d] = new String(b, StandardCharsets.UTF_8);
+        }
+        double[] weights = null;
+        if (in.get() != 0) {
+            weights = new double[size];
+            in.asDoubleBuffer().get(weights);
+            in.position(in.position() + 8 * size);
+        }
+        return new Roster(size, arena, columns[0], columns[1], columns[2], columns[3], columns[4], columns[5],
+                columns[6], dirs, weights);
+    }
+
+    private static byte[] trim(byte[] a, int n) {
+        if (a.length == n) return a;
+        byte[] t = new byte[n];
+        System.arraycopy(a, 0, t, 0, n);
+        return t;
+    }
+
+    private static double[] trim(double[] a, int n) {
+        if (a.length == n) return a;
+        double[] t = new double[n];
+        System.arraycopy(a, 0, t, 0, n);
+        return t;
+    }
+
+    private static int[] trim(int[] a, int n) {
+        if (a.length == n) return a;
+        int[] t = new int[n];
+        System.arraycopy(a, 0, t, 0, n);
+        return t;
+    }
+
+    // Appends entrants column by column; reuse is not allowed after build()
+    public static final class Builder {
+        private int size;
+        private byte[] arena;
+        private int arenaSize;
+        private int[] idStart, idLen, nameStart, nameLen, fileStart, fileLen, photoDir;
+        private double[] weights;
+        private final List<String> dirs = new ArrayList<>();
+        private final Map<String, Integer> dirIndex = new HashMap<>();
+
+        public Builder(int expectedSize) {
+            int cap = Math.max(16, expectedSize);
+            arena = new byte[cap * 24];
+            idStart = new int[cap];
+            idLen = new int[cap];
+            nameStart = new int[cap];
+            nameLen = new int[cap];
+            fileStart = new int[cap];
+            fileLen = new int[cap];
+            photoDir = new int[cap];
+        }
+
+        public Builder add(String id, String name, String photoPath) {
+            return add(id, name, photoPath, 1.0);
+        }
+
+        public Builder add(String id, String name, String photoPath, double weight) {
+            ensureCapacity(size + 1);
+            int i = size++;
+            setWeight(i, weight);
+            idStart[i] = arenaSize;
+            idLen[i] = append(id);
+            nameStart[i] = arenaSize;
+            nameLen[i] = append(name);
+            if (photoPath == null || photoPath.isEmpty()) {
+                photoDir[i] = -1;
+                fileStart[i] = arenaSize;
+                fileLen[i] = 0;
+            } else {
+                int cut = Math.max(photoPath.lastIndexOf('/'), photoPath.lastIndexOf('\\')) + 1;
+                photoDir[i] = intern(photoPath.substring(0, cut));
+                fileStart[i] = arenaSize;
+                fileLen[i] = append(photoPath.substring(cut));
+            }
+            return this;
+        }
+
+        // Append every entrant of another roster, copying its bytes without decoding
+        public Builder addAll(Roster other) {
+            ensureCapacity(size + other.size);
+            int base = arenaSize;
+            ensureArena(other.arena.length);
+            System.arraycopy(other.arena, 0, arena, arenaSize, other.arena.length);
+            arenaSize += other.arena.length;
+            int[] remap = new int[other.dirs.length];
+            for (int d = 0; d < remap.length; d++) remap[d] = intern(other.dirs[d]);
+            for (int j = 0; j < other.size; j++) {
+                int i = size++;
+                idStart[i] = base + other.idStart[j];
+                idLen[i] = other.idLen[j];
+                nameStart[i] = base + other.nameStart[j];
+                nameLen[i] = other.nameLen[j];
+                fileStart[i] = base + other.fileStart[j];
+                fileLen[i] = other.fileLen[j];
+                photoDir[i] = other.photoDir[j] < 0 ? -1 : remap[other.photoDir[j]];
+                setWeight(i, other.getWeight(j));
+            }
+            return this;
+        }
+
+        public int size() {
+            return size;
+        }
+
+        public Roster build() {
+            return new Roster(this);
+        }
+
+        // The weight column is only allocated once some entrant deviates from 1
+        private void setWeight(int i, double weight) {
+            if (weights == null) {
+                if (weight == 1.0) return;
+                weights = new double[idStart.length];
+                Arrays.fill(weights, 0, i, 1.0);
+            }
+            weights[i] = weight;
+        }
+
+        private int intern(String dir) {
+            Integer idx = dirIndex.get(dir);
+            if (idx == null) {
+                idx = dirs.size();
+                dirs.add(dir);
+                dirIndex.put(dir, idx);
+            }
+            return idx;
+        }
+
+        private int append(String s) {
+            if (s == null || s.isEmpty()) return 0;
+            byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+            ensureArena(bytes.length);
+            System.arraycopy(bytes, 0, arena, arenaSize, bytes.length);
+            arenaSize += bytes.length;
+            return bytes.length;
+        }
+
+        private void ensureArena(int extra) {
+            if (arenaSize + extra > arena.length) {
+                byte[] grown = new byte[Math.max(arenaSize + extra, arena.length * 2)];
+                System.arraycopy(arena, 0, grown, 0, arenaSize);
+                arena = grown;
+            }
+        }
+
+        private void ensureCapacity(int n) {
+            if (n <= idStart.length) return;
+            int cap = Math.max(n, idStart.length * 2);
+            idStart = grow(idStart, cap);
+            idLen = grow(idLen, cap);
+            nameStart = grow(nameStart, cap);
+            nameLen = grow(nameLen, cap);
+            fileStart = grow(fileStart, cap);
+            fileLen = grow(fileLen, cap);
+            photoDir = grow(photoDir, cap);
+            if (weights != null) {
+                double[] g = new double[cap];
+                System.arraycopy(weights, 0, g, 0, size);
+                weights = g;
+            }
+        }
+
+        private int[] grow(int[] a, int cap) {
+            int[] g = new int[cap];
+            System.arraycopy(a, 0, g, 0, size);
+            return g;
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package model;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Id-keyed difference between the roster in use and a reloaded one.
+// The reloaded roster is used as is (file order, so a restart that parses the same file
+// gets the same indices); remap() carries drawn state over from the old indices.
+// Entries are compared as bytes; only ids are decoded, for the lookup.
+public final class RosterDiff {
+    private final Roster base;
+    private final Roster next;
+    private final int[] oldToNew;
+    private final int added;
+    private final int removed;
+    private final int changed;
+    private final boolean reordered;
+    private final List<String> stalePhotos;
+
+    private RosterDiff(Roster base, Roster next, int[] oldToNew, int added, int removed, int changed,
+                       boolean reordered, List<String> stalePhotos) {
+        this.base = base;
+        this.next = next;
+        this.oldToNew = oldToNew;
+        this.added = added;
+        this.removed = removed;
+        this.changed = changed;
+        this.reordered = reordered;
+        this.stalePhotos = stalePhotos;
+    }
+
+    public static RosterDiff compute(Roster base, Roster next) {
+        Map<String, Integer> nextIndex = new HashMap<>(next.size() * 2);
+        for (int j = 0; j < next.size(); j++) {
+            nextIndex.putIfAbsent(next.getId(j), j);
+        }
+
+        boolean[] kept = new boolean[next.size()];
+        int[] oldToNew = new int[base.size()];
+        List<String> stale = new ArrayList<>();
+        int removed = 0;
+        int changed = 0;
+        boolean reordered = false;
+        for (int i = 0; i < base.size(); i++) {
+            Integer j = nextIndex.get(base.getId(i));
+            if (j == null || kept[j]) {
+                // Gone, or a duplicate id that the new file lists only once
+                oldToNew[i] = -1;
+                removed++;
+                if (!base.getPhotoPath(i).isEmpty()) stale.add(base.getPhotoPath(i));
+                continue;
+            }
+            kept[j] = true;
+            oldToNew[i] = j;
+            reordered |= j != i;
+            if (!base.sameEntry(i, next, j)) {
+                changed++;
+                if (!base.samePhoto(i, next, j) && !base.getPhotoPath(i).isEmpty()) stale.add(base.getPhotoPath(i));
+            }
+        }
+        int added = 0;
+        for (int j = 0; j < next.size(); j++) {
+            if (!kept[j]) added++;
+        }
+        return new RosterDiff(base, next, oldToNew, added, removed, changed, reordered,
+                Collections.unmodifiableList(stale));
+    }
+
+    public Roster getBase() { return base; }
+    public Roster getNext() { return next; }
+    public int getAdded() { return added; }
+    public int getRemoved() { return removed; }
+    public int getChanged() { return changed; }
+    // Nothing to apply: same entrants, same details, same order
+    public boolean isEmpty() { return added == 0 && removed == 0 && changed == 0 && !reordered; }
+
+    // Index in the new roster of base entrant i, or -1 if it was removed
+    public int remap(int i) {
+        return oldToNew[i];
+    }
+
+    // Photo paths no longer used by the entrants that had them (removed or re-pointed)
+    public List<String> getStalePhotos() {
+        return stalePhotos;
+    }
+
+    public String describe() {
+        return "新增 " + added + " 人，移除 " + removed + " 人，信息变更 " + changed + " 人";
+    }
+}
@@ -0,0 +1,105 @@
+package model;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+// Splits one UTF-8 roster line into CSV fields without regex or intermediate Strings.
+// Works on raw bytes: ',' and '"' are ASCII, so they never occur inside a multi-byte
+// UTF-8 sequence. Quoted fields may contain commas and doubled quotes ("") but not line
+// breaks. Fields are trimmed the same way String.trim() would. One instance per thread.
+final class RosterLineParser {
+    private static final int MAX_FIELDS = 8;
+
+    private byte[] line = new byte[256];
+    private byte[] quoted = new byte[256];
+    private int length;
+    private final String[] fields = new String[MAX_FIELDS];
+    private int fieldCount;
+    private String error;
+
+    // Parse bytes [from, to) of buf, excluding the line terminator.
+    // Returns the number of fields, or -1 when the line is malformed (see error()).
+    int parse(ByteBuffer buf, int from, int to) {
+        length = to - from;
+        if (line.length < length) {
+            line = new byte[Math.max(length, line.length * 2)];
+            quoted = new byte[line.length];
+        }
+        buf.get(from, line, 0, length);
+        return parseLine();
+    }
+
+    private int parseLine() {
+        fieldCount = 0;
+        error = null;
+        int n = length;
+        int i = 0;
+        while (true) {
+            int start = i;
+            while (i < n && (line[i] == ' ' || line[i] == '\t')) i++;
+            if (i < n && line[i] == '"') {
+                i++;
+                int len = 0;
+                while (true) {
+                    if (i >= n) {
+                        error = "引号未闭合";
+                        return -1;
+                    }
+                    byte b = line[i++];
+                    if (b == '"') {
+                        if (i < n && line[i] == '"') {
+                            quoted[len++] = '"';
+                            i++;
+                        } else {
+                            break;
+                        }
+                    } else {
+                        quoted[len++] = b;
+                    }
+                }
+                while (i < n && line[i] != ',') {
+                    if ((line[i] & 0xFF) > ' ') {
+                        error = "引号字段后存在多余字符";
+                        return -1;
+                    }
+                    i++;
+                }
+                add(new String(quoted, 0, len, StandardCharsets.UTF_8));
+            } else {
+                while (i < n && line[i] != ',') i++;
+                int s = start;
+                int e = i;
+                while (s < e && (line[s] & 0xFF) <= ' ') s++;
+                while (e > s && (line[e - 1] & 0xFF) <= ' ') e--;
+                add(s == e ? "" : new String(line, s, e - s, StandardCharsets.UTF_8));
+            }
+            if (i >= n) break;
+            i++; // skip the comma
+        }
+        return fieldCount;
+    }
+
+    private void add(String value) {
+        if (fieldCount < MAX_FIELDS) fields[fieldCount] = value;
+        fieldCount++;
+    }
+
+    // True when the line has nothing but whitespace
+    static boolean isBlank(ByteBuffer buf, int from, int to) {
+        for (int i = from; i < to; i++) {
+            if ((buf.get(i) & 0xFF) > ' ') return false;
+        }
+        return true;
+    }
+
+    String field(int i) {
+        return i < fieldCount && i < MAX_FIELDS ? fields[i] : "";
+    }
+
+    String error() { return error; }
+
+    // The last parsed line as text, for error reports
+    String lineText() {
+        return new String(line, 0, length, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,155 @@
+package model;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32C;
+
+// Binary copy of a parsed and photo-resolved roster, stored next to the CSV as
+// "<file>.snapshot" so later launches skip parsing and photo resolution.
+// Keyed by the CSV's path, size, mtime and CRC32C, plus the mtimes of every directory
+// photos were resolved against (adding or removing photos changes them). The columns
+// are read back with one mapped read and bulk copies. Anything unexpected (stale key,
+// truncation, old format) just means "no snapshot".
+final class RosterSnapshot {
+    private static final int MAGIC = 0x4C4F5453;
+    // 2: weights above Roster.MAX_WEIGHT are line errors, so older snapshots are re-parsed
+    private static final int VERSION = 2;
+
+    private RosterSnapshot() {
+    }
+
+    static File fileFor(File csv) {
+        return new File(csv.getPath() + ".snapshot");
+    }
+
+    // The cached result for csv, or null if there is none or it is stale
+    static UserLoadResult read(File csv, File imagesDir) {
+        File snap = fileFor(csv);
+        if (!snap.isFile() || !csv.isFile()) return null;
+        try (FileChannel ch = FileChannel.open(snap.toPath(), StandardOpenOption.READ)) {
+            MappedByteBuffer in = ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size());
+            if (in.getInt() != MAGIC || in.getInt() != VERSION) return null;
+            if (!string(in).equals(csv.getAbsolutePath())) return null;
+            if (in.getLong() != csv.length() || in.getLong() != csv.lastModified()) return null;
+            long hash = in.getLong();
+            int dirCount = in.getInt();
+            for (int d = 0; d < dirCount; d++) {
+                File dir = new File(string(in));
+                if (in.getLong() != dir.lastModified()) return null;
+            }
+            // Size and mtime match; make sure the content does too
+            if (hash != hash(csv)) return null;
+
+            Roster users = Roster.readFrom(in);
+            int errorCount = in.getInt();
+            List<UserLoadResult.LineError> errors = new ArrayList<>(errorCount);
+            for (int i = 0; i < errorCount; i++) {
+                errors.add(new UserLoadResult.LineError(in.getLong(), string(in), string(in)));
+            }
+            return new UserLoadResult(users, errors, null);
+        } catch (IOException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    // Store result for csv; failures only cost the next launch a CSV parse
+    static void write(File csv, File imagesDir, UserLoadResult result, long hash) {
+        Roster users = Roster.of(result.getUsers());
+        List<File> dirs = new ArrayList<>();
+        File csvDir = csv.getAbsoluteFile().getParentFile();
+        if (csvDir != null) dirs.add(csvDir);
+        dirs.add(imagesDir.getAbsoluteFile());
+        for (String d : users.photoDirs()) dirs.add(new File(d).getAbsoluteFile());
+
+        List<byte[]> strings = new ArrayList<>();
+        long bytes = 4 + 4 + 8 + 8 + 8 + 4;
+        bytes += stringSize(csv.getAbsolutePath(), strings);
+        for (File dir : dirs) bytes += stringSize(dir.getPath(), strings) + 8;
+        bytes += users.serializedSize() + 4;
+        for (UserLoadResult.LineError e : result.getErrors()) {
+            bytes += 8 + stringSize(e.getLine(), strings) + stringSize(e.getMessage(), strings);
+        }
+        if (bytes > Integer.MAX_VALUE) return;
+
+        ByteBuffer out = ByteBuffer.allocate((int) bytes);
+        int s = 0;
+        out.putInt(MAGIC).putInt(VERSION);
+        putString(out, strings.get(s++));
+        out.putLong(csv.length()).putLong(csv.lastModified()).putLong(hash);
+        out.putInt(dirs.size());
+        int[] mtimeAt = new int[dirs.size()];
+        for (int d = 0; d < dirs.size(); d++) {
+            putString(out, strings.get(s++));
+            mtimeAt[d] = out.position();
+            out.putLong(0);
+        }
+        users.writeTo(out);
+        out.putInt(result.getErrors().size());
+        for (UserLoadResult.LineError e : result.getErrors()) {
+            out.putLong(e.getLineNumber());
+            putString(out, strings.get(s++));
+            putString(out, strings.get(s++));
+        }
+        out.flip();
+
+        File snap = fileFor(csv);
+        File tmp = new File(snap.getPath() + ".tmp");
+        try {
+            try (FileChannel ch = FileChannel.open(tmp.toPath(), StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                while (out.hasRemaining()) ch.write(out);
+            }
+            Files.move(tmp.toPath(), snap.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            // Creating the snapshot changed its own directory's mtime, so the directory
+            // mtimes are filled in only now; rewriting file content leaves them alone
+            try (FileChannel ch = FileChannel.open(snap.toPath(), StandardOpenOption.WRITE)) {
+                ByteBuffer mtime = ByteBuffer.allocate(8);
+                for (int d = 0; d < dirs.size(); d++) {
+                    mtime.clear();
+                    mtime.putLong(dirs.get(d).lastModified()).flip();
+                    ch.write(mtime, mtimeAt[d]);
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("写入名单快照失败: " + e.getMessage());
+            tmp.delete();
+        }
+    }
+
+    // CRC32C of the file contents, over a mapped view
+    static long hash(File file) throws IOException {
+        try (FileChannel ch = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            CRC32C crc = new CRC32C();
+            long size = ch.size();
+            for (long pos = 0; pos < size; pos += Integer.MAX_VALUE) {
+                crc.update(ch.map(FileChannel.MapMode.READ_ONLY, pos, Math.min(Integer.MAX_VALUE, size - pos)));
+            }
+            return crc.getValue();
+        }
+    }
+
+    private static int stringSize(String s, List<byte[]> encoded) {
+        byte[] b = (s == null ? "" : s).getBytes(StandardCharsets.UTF_8);
+        encoded.add(b);
+        return 4 + b.length;
+    }
+
+    private static void putString(ByteBuffer out, byte[] b) {
+        out.putInt(b.length).put(b);
+    }
+
+    private static String string(ByteBuffer in) {
+        byte[] b = new byte[in.getInt()];
+        in.get(b);
+        return new String(b, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,92 @@
+package model;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+// Watches one roster file and reloads it when it changes on disk.
+// Editors save in bursts (truncate, write, rename), so events are debounced until the
+// file has been quiet for a moment, and a reload only happens when its size or mtime
+// actually moved. Reloading and onReload run on the watcher's daemon thread.
+public final class RosterWatcher implements Closeable {
+    private static final long QUIET_MILLIS = 500;
+
+    private final File file;
+    private final Consumer<UserLoadResult> onReload;
+    private final WatchService service;
+    private final Thread thread;
+    private long lastSize;
+    private long lastModified;
+
+    public RosterWatcher(File file, Consumer<UserLoadResult> onReload) throws IOException {
+        this.file = file.getAbsoluteFile();
+        this.onReload = onReload;
+        this.lastSize = this.file.length();
+        this.lastModified = this.file.lastModified();
+        this.service = FileSystems.getDefault().newWatchService();
+        this.file.getParentFile().toPath().register(service, StandardWatchEventKinds.ENTRY_CREATE,
+                StandardWatchEventKinds.ENTRY_MODIFY);
+        this.thread = new Thread(this::run, "roster-watcher");
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    private void run() {
+        Path name = file.toPath().getFileName();
+        try {
+            while (true) {
+                WatchKey key = service.take();
+                boolean touched = concerns(key, name);
+                // Keep absorbing events until the file has been quiet for a while
+                while (touched) {
+                    WatchKey more = service.poll(QUIET_MILLIS, TimeUnit.MILLISECONDS);
+                    if (more == null) break;
+                    concerns(more, name);
+                }
+                if (touched && changed()) {
+                    onReload.accept(UserLoader.load(file));
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            // closed
+        }
+    }
+
+    // Whether the key's events mention the roster file; re-arms the key
+    private static boolean concerns(WatchKey key, Path name) {
+        boolean hit = false;
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (name.equals(event.context())) hit = true;
+        }
+        key.reset();
+        return hit;
+    }
+
+    private boolean changed() {
+        long size = file.length();
+        long modified = file.lastModified();
+        if (modified == 0 || (size == lastSize && modified == lastModified)) return false;
+        lastSize = size;
+        lastModified = modified;
+        return true;
+    }
+
+    @Override
+    public void close() throws IOException {
+        service.close();
+        thread.interrupt();
+    }
+}
@@ -4,14 +4,23 @@ public class User {
         private final String id;
         private final String name;
         private final String photoPath;
+        // Relative chance in weighted draws (ticket count, seniority bonus, ...)
+        private final double weight;
 
         public User(String id, String name, String photoPath) {
+            this(id, name, photoPath, 1.0);
+        }
+
+        public User(String id, String name, String photoPath, double weight) {
             this.id = id;
             this.name = name;
             this.photoPath = photoPath;
+            this.weight = weight;
         }
 
         public String getId() { return id; }
         public String getName() { return name; }
         public String getPhotoPath() { return photoPath; }
+        public double getWeight() { return weight; }
 }
+
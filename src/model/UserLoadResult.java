@@ -0,0 +1,50 @@
+package model;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+// Outcome of loading a roster file: the users that parsed, one report per rejected line,
+// and the I/O failure (if any) that stopped the load.
+public class UserLoadResult {
+    private final List<User> users;
+    private final List<LineError> errors;
+    private final String failure;
+
+    public UserLoadResult(List<User> users, List<LineError> errors, String failure) {
+        this.users = users;
+        this.errors = errors;
+        this.failure = failure;
+    }
+
+    static UserLoadResult failed(String failure) {
+        return new UserLoadResult(new ArrayList<>(), Collections.emptyList(), failure);
+    }
+
+    public List<User> getUsers() { return users; }
+    public List<LineError> getErrors() { return errors; }
+    public String getFailure() { return failure; }
+    public boolean isFailed() { return failure != null; }
+
+    // A roster line that could not be turned into a User
+    public static class LineError {
+        private final long lineNumber;
+        private final String line;
+        private final String message;
+
+        public LineError(long lineNumber, String line, String message) {
+            this.lineNumber = lineNumber;
+            this.line = line;
+            this.message = message;
+        }
+
+        public long getLineNumber() { return lineNumber; }
+        public String getLine() { return line; }
+        public String getMessage() { return message; }
+
+        @Override
+        public String toString() {
+            return "第 " + lineNumber + " 行: " + message + " [" + line + "]";
+        }
+    }
+}
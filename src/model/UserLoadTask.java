@@ -1 +1,53 @@
+package model;
 
+import java.io.File;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+
+// Loads a roster file on a background thread (through the snapshot, like
+// UserLoader.loadCached) and streams it to a listener: chunks are parsed in parallel and
+// handed over in file order as soon as they and every chunk before them are done, with
+// the bytes covered so far. cancel() stops the load at the next chunk boundary. UI-free;
+// the listener is called on the loading thread.
+public final class UserLoadTask implements Callable<UserLoadResult> {
+    public interface Listener {
+        // users: the next entrants in file order, following the previous batch
+        void batch(Roster users, long bytesDone, long bytesTotal);
+    }
+
+    private final File file;
+    private final Listener listener;
+    private volatile boolean cancelled;
+
+    public UserLoadTask(File file, Listener listener) {
+        this.file = file.getAbsoluteFile();
+        this.listener = listener;
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    public void cancel() {
+        cancelled = true;
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    // The complete result; rejected lines are in its errors, an unreadable file is a
+    // failed result. Throws CancellationException once cancelled.
+    @Override
+    public UserLoadResult call() {
+        if (cancelled) throw new CancellationException("已取消读取名单");
+        UserLoadResult result = UserLoader.loadCached(file, this);
+        if (cancelled) throw new CancellationException("已取消读取名单");
+        return result;
+    }
+
+    void chunkLoaded(Roster users, long bytesDone, long bytesTotal) {
+        if (cancelled) throw new CancellationException("已取消读取名单");
+        if (listener != null) listener.batch(users, bytesDone, bytesTotal);
+    }
+}
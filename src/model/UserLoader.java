@@ -1,99 +1,252 @@
 package model;
 
+import metrics.Counter;
+import metrics.Histogram;
+import metrics.Metrics;
+
 import java.io.*;
 import java.util.*;
-import java.nio.charset.StandardCharsets;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 public class UserLoader {
+    // Chunks are line-aligned slices of the mapped file, parsed in parallel
+    private static final long MIN_CHUNK = 1L << 20;
+    private static final long MAX_CHUNK = 64L << 20;
+    // Chunk size when a task streams the load, so it sees progress even on one core
+    private static final long STREAM_CHUNK = 1L << 20;
+
+    private static final Histogram LOAD_CACHED = Metrics.histogram("roster.load");
+    private static final Histogram PARSE = Metrics.histogram("roster.parse");
+    private static final Counter ENTRANTS = Metrics.counter("roster.entrantsParsed");
+    private static final Counter SNAPSHOT_HITS = Metrics.counter("roster.snapshotHits");
+    private static final Counter SNAPSHOT_MISSES = Metrics.counter("roster.snapshotMisses");
 
     public static List<User> loadUsers(String filePath) {
-        List<User> users = new ArrayList<>();
-        File csvFile = new File(filePath);
+        // Timed by loadCached (roster.load)
+        UserLoadResult result = loadCached(new File(filePath));
+        if (result.isFailed()) {
+            System.err.println("读取名单时发生错误: " + result.getFailure());
+        }
+        List<UserLoadResult.LineError> errors = result.getErrors();
+        for (int i = 0; i < Math.min(20, errors.size()); i++) {
+            System.err.println("名单格式错误，" + errors.get(i));
+        }
+        if (errors.size() > 20) {
+            System.err.println("... (共 " + errors.size() + " 行格式错误)");
+        }
+        return result.getUsers();
+    }
+
+    // load() behind a binary snapshot kept next to the file: when the file and the photo
+    // directories are unchanged the parsed, resolved roster is read back directly
+    public static UserLoadResult loadCached(File csvFile) {
+        return loadCached(csvFile, null);
+    }
+
+    static UserLoadResult loadCached(File csvFile, UserLoadTask task) {
+        long start = Metrics.now();
+        File imagesDir = new File("images");
+        UserLoadResult cached = RosterSnapshot.read(csvFile, imagesDir);
+        if (cached != null) {
+            SNAPSHOT_HITS.increment();
+            LOAD_CACHED.recordSince(start);
+            if (task != null) task.chunkLoaded(Roster.of(cached.getUsers()), csvFile.length(), csvFile.length());
+            return cached;
+        }
+        SNAPSHOT_MISSES.increment();
+        long hash;
+        try {
+            // Hashed before parsing, so an edit during the parse leaves the snapshot stale
+            hash = RosterSnapshot.hash(csvFile);
+        } catch (IOException e) {
+            return load(csvFile, task);
+        }
+        UserLoadResult result = load(csvFile, task);
+        if (!result.isFailed()) {
+            RosterSnapshot.write(csvFile, imagesDir, result, hash);
+        }
+        LOAD_CACHED.recordSince(start);
+        return result;
+    }
+
+    // Memory-map the roster, split it into line-aligned chunks and parse them in parallel.
+    // Users keep file order; rejected lines and I/O failures are reported, not dropped.
+    public static UserLoadResult load(File csvFile) {
+        return load(csvFile, null);
+    }
+
+    // Chunks are collected in file order as they complete, so a task sees the roster grow
+    // from the top while later chunks are still being parsed
+    static UserLoadResult load(File csvFile, UserLoadTask task) {
+        long start = Metrics.now();
         File csvDir = csvFile.getParentFile();
         File imagesDir = new File("images");
-        try (BufferedReader br = new BufferedReader(new InputStreamReader(new FileInputStream(csvFile), StandardCharsets.UTF_8))) {
-            String line;
-            boolean firstLine = true;
-            while ((line = br.readLine()) != null) {
-                if (firstLine) {
-                    // strip UTF-8 BOM if present
-                    if (!line.isEmpty() && line.charAt(0) == '\uFEFF') {
-                        line = line.substring(1);
-                    }
-                    firstLine = false;
+        PhotoIndex photos = new PhotoIndex();
+        List<CompletableFuture<Chunk>> parsing = new ArrayList<>();
+        try (FileChannel ch = FileChannel.open(csvFile.toPath(), StandardOpenOption.READ)) {
+            long[] bounds = chunkBounds(ch, task != null);
+            for (int i = 0; i < bounds.length - 1; i++) {
+                int c = i;
+                parsing.add(CompletableFuture.supplyAsync(
+                        () -> parseChunk(ch, bounds[c], bounds[c + 1], c == 0, csvDir, imagesDir, photos)));
+            }
+
+            Roster.Builder users = new Roster.Builder((int) Math.min(ch.size() / 64, 1 << 24));
+            List<UserLoadResult.LineError> errors = new ArrayList<>();
+            long lineOffset = 0;
+            for (int i = 0; i < parsing.size(); i++) {
+                Chunk c = parsing.get(i).join();
+                Roster part = c.users.build();
+                users.addAll(part);
+                for (UserLoadResult.LineError e : c.errors) {
+                    errors.add(new UserLoadResult.LineError(lineOffset + e.getLineNumber(), e.getLine(), e.getMessage()));
                 }
-                if (line.trim().isEmpty()) continue;
-                String[] parts = line.split(",");
-                if (parts.length >= 2) {
-                    String id = parts[0].trim();
-                    String name = parts[1].trim();
-                    String photoPathRaw = parts.length >= 3 ? parts[2].trim() : "";
-
-                    File resolved = resolvePhotoFile(photoPathRaw, id, name, csvDir, imagesDir);
+                lineOffset += c.lines;
+                if (task != null) task.chunkLoaded(part, bounds[i + 1], bounds[bounds.length - 1]);
+            }
+            Roster roster = users.build();
+            PARSE.recordSince(start);
+            ENTRANTS.add(roster.size());
+            return new UserLoadResult(roster, errors, null);
+        } catch (IOException e) {
+            return UserLoadResult.failed(e.toString());
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause() instanceof UncheckedIOException ? e.getCause().getCause() : e.getCause();
+            return UserLoadResult.failed(String.valueOf(cause));
+        } finally {
+            // Only left running when cancelled or failed; they would read a closed channel
+            for (CompletableFuture<Chunk> f : parsing) f.cancel(false);
+        }
+    }
+
+    // Offsets where each chunk starts, plus the file size as the final bound
+    private static long[] chunkBounds(FileChannel ch, boolean streaming) throws IOException {
+        long size = ch.size();
+        long byMax = (size + (streaming ? STREAM_CHUNK : MAX_CHUNK) - 1) / (streaming ? STREAM_CHUNK : MAX_CHUNK);
+        long byCores = Math.min(Runtime.getRuntime().availableProcessors(), size / MIN_CHUNK);
+        int n = (int) Math.max(1, Math.max(byMax, byCores));
+        long[] bounds = new long[n + 1];
+        int count = 1;
+        for (int i = 1; i < n; i++) {
+            long pos = nextLineStart(ch, Math.max(size * i / n, bounds[count - 1]), size);
+            if (pos > bounds[count - 1] && pos < size) bounds[count++] = pos;
+        }
+        bounds[count++] = size;
+        return Arrays.copyOf(bounds, count);
+    }
+
+    private static long nextLineStart(FileChannel ch, long pos, long size) throws IOException {
+        ByteBuffer buf = ByteBuffer.allocate(8192);
+        while (pos < size) {
+            buf.clear();
+            int read = ch.read(buf, pos);
+            if (read <= 0) break;
+            for (int i = 0; i < read; i++) {
+                if (buf.get(i) == '\n') return pos + i + 1;
+            }
+            pos += read;
+        }
+        return size;
+    }
+
+    private static Chunk parseChunk(FileChannel ch, long start, long end, boolean first, File csvDir, File imagesDir, PhotoIndex photos) {
+        MappedByteBuffer buf;
+        try {
+            buf = ch.map(FileChannel.MapMode.READ_ONLY, start, end - start);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        Chunk chunk = new Chunk();
+        RosterLineParser parser = new RosterLineParser();
+        int limit = buf.limit();
+        int pos = 0;
+        // strip UTF-8 BOM if present
+        if (first && limit >= 3 && buf.get(0) == (byte) 0xEF && buf.get(1) == (byte) 0xBB && buf.get(2) == (byte) 0xBF) {
+            pos = 3;
+        }
+        while (pos < limit) {
+            int nl = pos;
+            while (nl < limit && buf.get(nl) != '\n') nl++;
+            int lineEnd = nl;
+            if (lineEnd > pos && buf.get(lineEnd - 1) == '\r') lineEnd--;
+            chunk.lines++;
+            if (!RosterLineParser.isBlank(buf, pos, lineEnd)) {
+                int fields = parser.parse(buf, pos, lineEnd);
+                if (fields < 0) {
+                    chunk.errors.add(new UserLoadResult.LineError(chunk.lines, parser.lineText(), parser.error()));
+                } else if (fields < 2) {
+                    chunk.errors.add(new UserLoadResult.LineError(chunk.lines, parser.lineText(), "字段不足，应为：编号,姓名[,图片路径[,权重]]"));
+                } else {
+                    String id = parser.field(0);
+                    String name = parser.field(1);
+                    String photoPathRaw = parser.field(2);
+                    double weight = parseWeight(parser.field(3));
+                    if (Double.isNaN(weight)) {
+                        chunk.errors.add(new UserLoadResult.LineError(chunk.lines, parser.lineText(), "权重无效，应为非负数字"));
+                        pos = nl + 1;
+                        continue;
+                    }
+                    if (weight > Roster.MAX_WEIGHT) {
+                        chunk.errors.add(new UserLoadResult.LineError(chunk.lines, parser.lineText(), "权重过大，不能超过 1000000"));
+                        pos = nl + 1;
+                        continue;
+                    }
+
+                    File resolved = resolvePhotoFile(photoPathRaw, id, name, csvDir, imagesDir, photos);
                     String finalPhotoPath = resolved != null ? resolved.getPath() : "";
 
-                    User user = new User(id, name, finalPhotoPath);
-                    users.add(user);
+                    chunk.users.add(id, name, finalPhotoPath, weight);
                 }
             }
-        } catch (IOException e) {
-            // Let caller handle empty or failed load by returning empty list
+            pos = nl + 1;
+        }
+        return chunk;
+    }
+
+    // Optional 4th column: draw weight, default 1. NaN when it is not a non-negative number.
+    private static double parseWeight(String raw) {
+        if (raw.isEmpty()) return 1.0;
+        try {
+            double w = Double.parseDouble(raw);
+            return w >= 0 && !Double.isInfinite(w) ? w : Double.NaN;
+        } catch (NumberFormatException e) {
+            return Double.NaN;
         }
-        return users;
     }
 
-    private static File resolvePhotoFile(String raw, String id, String name, File csvDir, File imagesDir) {
+    // Users and errors of one chunk; error line numbers are relative to the chunk
+    private static class Chunk {
+        final Roster.Builder users = new Roster.Builder(1024);
+        final List<UserLoadResult.LineError> errors = new ArrayList<>();
+        long lines;
+    }
+
+    // Resolve a photo through the directory index: each candidate is a hash lookup, and
+    // only directories not yet validated by this load cost a stat (plus a listing if stale)
+    private static File resolvePhotoFile(String raw, String id, String name, File csvDir, File imagesDir, PhotoIndex index) {
+        File hit;
         // Try raw as-is
         if (raw != null && !raw.isEmpty()) {
             File f = new File(raw);
-            if (f.isAbsolute() && f.exists()) return f;
+            if (f.isAbsolute() && (hit = index.lookup(f)) != null) return hit;
             // relative to CSV directory
-            if (csvDir != null) {
-                File relCsv = new File(csvDir, raw);
-                if (relCsv.exists()) return relCsv;
-            }
+            if (csvDir != null && (hit = index.lookup(new File(csvDir, raw))) != null) return hit;
             // relative to working dir
-            File relWd = new File(System.getProperty("user.dir"), raw);
-            if (relWd.exists()) return relWd;
+            if ((hit = index.lookup(new File(System.getProperty("user.dir"), raw))) != null) return hit;
             // relative to images dir
-            if (imagesDir != null) {
-                File relImg = new File(imagesDir, raw);
-                if (relImg.exists()) return relImg;
-            }
+            if (imagesDir != null && (hit = index.lookup(new File(imagesDir, raw))) != null) return hit;
             // try by filename only, in images dir
-            String fileName = new File(raw).getName();
-            if (imagesDir != null) {
-                File byName = new File(imagesDir, fileName);
-                if (byName.exists()) return byName;
-            }
+            if (imagesDir != null && (hit = index.lookup(new File(imagesDir, f.getName()))) != null) return hit;
         }
 
-        String[] exts = {".jpg", ".jpeg", ".png", ".bmp", ".gif", ".webp"};
-        if (imagesDir != null) {
-            for (String ext : exts) {
-                if (id != null && !id.isEmpty()) {
-                    File f = new File(imagesDir, id + ext);
-                    if (f.exists()) return f;
-                }
-                if (name != null && !name.isEmpty()) {
-                    File f = new File(imagesDir, name + ext);
-                    if (f.exists()) return f;
-                }
-            }
-        }
-        // Try infer relative to CSV dir too
-        if (csvDir != null) {
-            for (String ext : new String[]{".jpg", ".jpeg", ".png", ".bmp", ".gif", ".webp"}) {
-                if (id != null && !id.isEmpty()) {
-                    File f = new File(csvDir, id + ext);
-                    if (f.exists()) return f;
-                }
-                if (name != null && !name.isEmpty()) {
-                    File f = new File(csvDir, name + ext);
-                    if (f.exists()) return f;
-                }
-            }
-        }
+        // Infer from id or name in the images dir, then relative to CSV dir too
+        if (imagesDir != null && (hit = index.find(imagesDir, id, name)) != null) return hit;
+        if (csvDir != null && (hit = index.find(csvDir, id, name)) != null) return hit;
         return null;
     }
 }
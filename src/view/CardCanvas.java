@@ -0,0 +1,165 @@
+package view;
+
+import javafx.geometry.Rectangle2D;
+import javafx.geometry.VPos;
+import javafx.scene.canvas.Canvas;
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.image.Image;
+import javafx.scene.paint.Color;
+import javafx.scene.text.Font;
+import javafx.scene.text.Text;
+import javafx.scene.text.TextAlignment;
+
+import java.util.Arrays;
+import java.util.function.DoubleSupplier;
+
+// The rolling winners grid painted onto one Canvas instead of a VBox/ImageView/Label per
+// card, so a frame costs a clear and one drawImage/fillText per card with no CSS or layout
+// pass, however many winners are drawn at once. Thumbnails come from the same cache as the
+// card nodes, preferably from the atlas pages; the text line height is measured once.
+// When the grid would get taller than MAX_HEIGHT the cards are scaled down to fit, keeping
+// the canvas texture bounded.
+final class CardCanvas {
+    private static final double IMAGE_WIDTH = 113;
+    private static final double IMAGE_HEIGHT = 150;
+    private static final double CELL_WIDTH = 140;
+    private static final double GAP = 10;
+    private static final double TEXT_GAP = 5;
+    private static final double FONT_SIZE = 18;
+    private static final double MAX_HEIGHT = 4096;
+    private static final double MIN_SCALE = 0.25;
+
+    private final Canvas canvas = new Canvas();
+    private final ThumbnailLoader thumbnails;
+    private final DoubleSupplier availableWidth;
+    private final double lineHeight;
+    private final Font[] fonts = new Font[8];
+
+    // What is on the canvas, copied out of the caller's (reused) index array
+    private String[] paths = new String[0];
+    private String[] labels = new String[0];
+    private int count;
+    private int columns = 1;
+    private double scale = 1;
+
+    CardCanvas(ThumbnailLoader thumbnails, DoubleSupplier availableWidth) {
+        this.thumbnails = thumbnails;
+        this.availableWidth = availableWidth;
+        Text probe = new Text("编号 - 姓名 Ag");
+        probe.setFont(Font.font(FONT_SIZE));
+        this.lineHeight = Math.ceil(probe.getLayoutBounds().getHeight());
+    }
+
+    Canvas getNode() {
+        return canvas;
+    }
+
+    // Paint roster indices[0..n) as the current frame; text and paths come from cards
+    void show(CardLabels cards, int[] indices, int n) {
+        if (paths.length < n) {
+            paths = Arrays.copyOf(paths, Math.max(n, paths.length * 2));
+            labels = Arrays.copyOf(labels, paths.length);
+        }
+        for (int i = 0; i < n; i++) {
+            paths[i] = cards.photoPath(indices[i]);
+            labels[i] = cards.label(indices[i]);
+        }
+        for (int i = n; i < count; i++) {
+            paths[i] = null;
+            labels[i] = null;
+        }
+        count = n;
+        layout();
+        paint();
+    }
+
+    // Re-flow for the current width, e.g. after the window was resized
+    void relayout() {
+        if (layout()) paint();
+    }
+
+    // A background decode finished: repaint the cards showing that photo
+    void thumbnailReady(String path, Image img) {
+        if (path == null) return;
+        GraphicsContext g = canvas.getGraphicsContext2D();
+        for (int i = 0; i < count; i++) {
+            if (path.equals(paths[i])) {
+                double x = cellX(i) + (CELL_WIDTH - IMAGE_WIDTH) / 2 * scale;
+                double y = cellY(i);
+                g.clearRect(x, y, IMAGE_WIDTH * scale, IMAGE_HEIGHT * scale);
+                g.drawImage(img, x, y, IMAGE_WIDTH * scale, IMAGE_HEIGHT * scale);
+            }
+        }
+    }
+
+    // Size the canvas for count cards; true if anything changed
+    private boolean layout() {
+        double width = Math.max(CELL_WIDTH, availableWidth.getAsDouble());
+        double s = 1;
+        int cols;
+        double height;
+        while (true) {
+            cols = Math.max(1, (int) ((width + GAP) / ((CELL_WIDTH + GAP) * s)));
+            int rows = (count + cols - 1) / cols;
+            height = rows * (cellHeight() + GAP) * s - (rows > 0 ? GAP * s : 0);
+            if (height <= MAX_HEIGHT || s <= MIN_SCALE) break;
+            s = Math.max(MIN_SCALE, s * 0.9);
+        }
+        cols = Math.min(cols, Math.max(1, count));
+        height = Math.min(height, MAX_HEIGHT);
+        double w = cols * (CELL_WIDTH + GAP) * s - GAP * s;
+        boolean changed = cols != columns || s != scale || canvas.getWidth() != w || canvas.getHeight() != height;
+        columns = cols;
+        scale = s;
+        canvas.setWidth(w);
+        canvas.setHeight(height);
+        return changed;
+    }
+
+    private void paint() {
+        GraphicsContext g = canvas.getGraphicsContext2D();
+        g.clearRect(0, 0, canvas.getWidth(), canvas.getHeight());
+        g.setFill(Color.web("#333"));
+        g.setFont(font());
+        g.setTextAlign(TextAlignment.CENTER);
+        g.setTextBaseline(VPos.TOP);
+        double imageW = IMAGE_WIDTH * scale;
+        double imageH = IMAGE_HEIGHT * scale;
+        double inset = (CELL_WIDTH - IMAGE_WIDTH) / 2 * scale;
+        for (int i = 0; i < count; i++) {
+            double x = cellX(i);
+            double y = cellY(i);
+            if (y >= canvas.getHeight()) break;
+            ThumbnailAtlas.Slot slot = thumbnails.atlasSlot(paths[i]);
+            if (slot != null) {
+                Rectangle2D v = slot.viewport;
+                g.drawImage(slot.page, v.getMinX(), v.getMinY(), v.getWidth(), v.getHeight(), x + inset, y, imageW, imageH);
+            } else {
+                g.drawImage(thumbnails.requestRounded(paths[i], IMAGE_WIDTH, IMAGE_HEIGHT), x + inset, y, imageW, imageH);
+            }
+            // maxWidth squeezes long labels into the cell rather than overlapping neighbours
+            g.fillText(labels[i], x + CELL_WIDTH * scale / 2, y + imageH + TEXT_GAP * scale, CELL_WIDTH * scale);
+        }
+    }
+
+    // Fonts per scale step, created once
+    private Font font() {
+        int step = (int) Math.round(scale * (fonts.length - 1));
+        if (fonts[step] == null) {
+            fonts[step] = Font.font(Math.max(6, FONT_SIZE * step / (fonts.length - 1)));
+        }
+        return fonts[step];
+    }
+
+    private double cellHeight() {
+        return IMAGE_HEIGHT + TEXT_GAP + lineHeight;
+    }
+
+    private double cellX(int i) {
+        return (i % columns) * (CELL_WIDTH + GAP) * scale;
+    }
+
+    private double cellY(int i) {
+        return (i / columns) * (cellHeight() + GAP) * scale;
+    }
+}
@@ -0,0 +1,39 @@
+package view;
+
+import model.Roster;
+
+// Card text ("id - name") and photo path per roster index for the rolling display. Each is
+// built the first time its index is shown and reused by every later frame, so scrolling
+// makes no strings and decodes nothing from the roster arena. Cached per Roster: a new
+// roster (load or update) starts over. FX thread only.
+final class CardLabels {
+    private Roster roster;
+    private String[] labels = new String[0];
+    private String[] paths = new String[0];
+
+    // Look up indices of this roster from now on
+    void use(Roster r) {
+        if (r == roster) return;
+        roster = r;
+        labels = new String[r.size()];
+        paths = new String[r.size()];
+    }
+
+    String label(int index) {
+        String s = labels[index];
+        if (s == null) {
+            s = roster.getId(index) + " - " + roster.getName(index);
+            labels[index] = s;
+        }
+        return s;
+    }
+
+    String photoPath(int index) {
+        String s = paths[index];
+        if (s == null) {
+            s = roster.getPhotoPath(index);
+            paths[index] = s;
+        }
+        return s;
+    }
+}
@@ -0,0 +1,119 @@
+package view;
+
+import javafx.scene.image.Image;
+import javafx.scene.image.PixelFormat;
+import javafx.scene.image.PixelReader;
+import metrics.Metrics;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Pre-scaled photos kept on disk across runs, so a thumbnail never has to decode the
+// multi-megabyte original twice.
+// Entries are small images at the exact card size, named by a hash of the source path,
+// its mtime and length and the target size; editing or replacing a photo simply misses.
+// Opaque photos are stored as JPEG, photos with any transparency as PNG so their alpha
+// comes back as decoded (the format is detected from the content on load). Entries hold
+// the unrounded photo; callers round the corners after loading, as for a fresh decode.
+// Safe to use from any thread.
+final class DiskThumbnailCache {
+    private static final float QUALITY = 0.9f;
+
+    private final File dir;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong writes = new AtomicLong();
+
+    DiskThumbnailCache(File dir) {
+        this.dir = dir;
+        Metrics.gauge("thumbnailDisk.hits", hits::get);
+        Metrics.gauge("thumbnailDisk.misses", misses::get);
+        Metrics.gauge("thumbnailDisk.writes", writes::get);
+    }
+
+    // The cached pre-scaled photo, or null (not cached yet, or the source changed)
+    Image load(File source, int w, int h) {
+        File entry = entryFor(source, w, h);
+        if (entry == null || !entry.isFile()) {
+            misses.incrementAndGet();
+            return null;
+        }
+        Image img = new Image(entry.toURI().toString(), w, h, false, true);
+        if (img.isError() || (int) img.getWidth() != w || (int) img.getHeight() != h) {
+            entry.delete();
+            misses.incrementAndGet();
+            return null;
+        }
+        hits.incrementAndGet();
+        return img;
+    }
+
+    boolean contains(File source, int w, int h) {
+        File entry = entryFor(source, w, h);
+        return entry != null && entry.isFile();
+    }
+
+    // Save a photo already decoded at w x h; failures only cost a re-decode next time
+    void store(File source, int w, int h, Image scaled) {
+        File entry = entryFor(source, w, h);
+        PixelReader reader = scaled.getPixelReader();
+        if (entry == null || reader == null || (int) scaled.getWidth() != w || (int) scaled.getHeight() != h) return;
+        int[] argb = new int[w * h];
+        reader.getPixels(0, 0, w, h, PixelFormat.getIntArgbInstance(), argb, 0, w);
+        boolean opaque = true;
+        for (int p : argb) {
+            if (p >>> 24 != 0xFF) {
+                opaque = false;
+                break;
+            }
+        }
+        BufferedImage pixels = new BufferedImage(w, h, opaque ? BufferedImage.TYPE_INT_RGB : BufferedImage.TYPE_INT_ARGB);
+        pixels.setRGB(0, 0, w, h, argb, 0, w);
+
+        File tmp = new File(entry.getPath() + "." + Thread.currentThread().getId() + ".tmp");
+        ImageWriter writer = ImageIO.getImageWritersByFormatName(opaque ? "jpg" : "png").next();
+        try {
+            entry.getParentFile().mkdirs();
+            try (ImageOutputStream out = ImageIO.createImageOutputStream(tmp)) {
+                ImageWriteParam param = writer.getDefaultWriteParam();
+                if (opaque) {
+                    param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+                    param.setCompressionQuality(QUALITY);
+                }
+                writer.setOutput(out);
+                writer.write(null, new IIOImage(pixels, null, null), param);
+            }
+            Files.move(tmp.toPath(), entry.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            writes.incrementAndGet();
+        } catch (IOException e) {
+            tmp.delete();
+        } finally {
+            writer.dispose();
+        }
+    }
+
+    // <dir>/<2 hex>/<32 hex>.thumb, or null when the source does not exist
+    private File entryFor(File source, int w, int h) {
+        long modified = source.lastModified();
+        if (modified == 0) return null;
+        String key = source.getAbsolutePath() + "|" + modified + "|" + source.length() + "|" + w + "x" + h;
+        String name = UUID.nameUUIDFromBytes(key.getBytes(StandardCharsets.UTF_8)).toString().replace("-", "");
+        return new File(new File(dir, name.substring(0, 2)), name + ".thumb");
+    }
+
+    String describe() {
+        return String.format("磁盘缩略图缓存: 命中 %d，未命中 %d，新写入 %d（%s）",
+                hits.get(), misses.get(), writes.get(), dir.getPath());
+    }
+}
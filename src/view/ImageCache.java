@@ -0,0 +1,93 @@
+package view;
+
+import javafx.scene.image.Image;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Predicate;
+
+// Decoded images bounded by estimated pixel memory (width x height x 4 bytes) rather than
+// entry count. Least recently used entries are evicted first. Synchronized so images can
+// be added from background threads.
+final class ImageCache {
+    private final LinkedHashMap<String, Image> entries = new LinkedHashMap<>(256, 0.75f, true);
+    private final long budgetBytes;
+    private long usedBytes;
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    ImageCache(long budgetBytes) {
+        this.budgetBytes = budgetBytes;
+    }
+
+    synchronized Image get(String key) {
+        Image img = entries.get(key);
+        if (img != null) hits++;
+        else misses++;
+        return img;
+    }
+
+    // Presence check that neither counts as a hit/miss nor refreshes recency
+    synchronized boolean contains(String key) {
+        return entries.containsKey(key);
+    }
+
+    synchronized void put(String key, Image img) {
+        Image old = entries.put(key, img);
+        if (old != null) usedBytes -= bytesOf(old);
+        usedBytes += bytesOf(img);
+        // Keep at least the newest entry even if it alone exceeds the budget
+        Iterator<Map.Entry<String, Image>> it = entries.entrySet().iterator();
+        while (usedBytes > budgetBytes && entries.size() > 1 && it.hasNext()) {
+            Map.Entry<String, Image> eldest = it.next();
+            if (eldest.getValue() == img) continue;
+            usedBytes -= bytesOf(eldest.getValue());
+            it.remove();
+            evictions++;
+        }
+    }
+
+    // Drop every entry whose key matches; returns how many were removed
+    synchronized int removeIf(Predicate<String> keyTest) {
+        int removed = 0;
+        Iterator<Map.Entry<String, Image>> it = entries.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<String, Image> e = it.next();
+            if (keyTest.test(e.getKey())) {
+                usedBytes -= bytesOf(e.getValue());
+                it.remove();
+                removed++;
+            }
+        }
+        return removed;
+    }
+
+    synchronized void clear() {
+        entries.clear();
+        usedBytes = 0;
+    }
+
+    static long bytesOf(Image img) {
+        return (long) Math.ceil(img.getWidth()) * (long) Math.ceil(img.getHeight()) * 4L;
+    }
+
+    synchronized long hits() { return hits; }
+    synchronized long misses() { return misses; }
+    synchronized long evictions() { return evictions; }
+    synchronized int size() { return entries.size(); }
+    synchronized long usedBytes() { return usedBytes; }
+    long budgetBytes() { return budgetBytes; }
+
+    synchronized double hitRate() {
+        long total = hits + misses;
+        return total == 0 ? 0 : (double) hits / total;
+    }
+
+    synchronized String describe() {
+        return String.format("缓存图片: %d 张，占用 %.1f / %.1f MB\n命中: %d，未命中: %d，命中率: %.1f%%\n淘汰: %d",
+                entries.size(), usedBytes / 1048576.0, budgetBytes / 1048576.0,
+                hits, misses, hitRate() * 100, evictions);
+    }
+}
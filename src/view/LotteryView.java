@@ -3,44 +3,77 @@ package view;
 import javafx.geometry.Insets;
 import javafx.scene.Node;
 import controller.LotteryController;
+import engine.DrawRound;
+import engine.PrizePlan;
+import engine.ResultExporter;
+import javafx.animation.FadeTransition;
+import javafx.animation.KeyFrame;
+import javafx.animation.Timeline;
+import javafx.concurrent.Task;
 import javafx.geometry.Pos;
 import javafx.scene.Scene;
-import javafx.scene.SnapshotParameters;
 import javafx.scene.control.*;
 import javafx.scene.image.*;
 import javafx.scene.input.KeyCode;
 import javafx.scene.input.KeyCodeCombination;
 import javafx.scene.input.KeyCombination;
 import javafx.scene.layout.*;
-import javafx.scene.paint.Color;
-import javafx.scene.shape.Rectangle;
 import javafx.scene.text.Font;
 import javafx.stage.Stage;
 import javafx.stage.FileChooser;
 import javafx.stage.DirectoryChooser;
+import javafx.util.Duration;
+import metrics.Histogram;
+import metrics.Metrics;
+import model.PhotoMatcher;
+import model.Roster;
+import model.RosterDiff;
 import model.User;
-import model.UserLoader;
+import model.UserLoadResult;
 
-import java.util.HashMap;
-import java.util.Map;
 import java.util.List;
 import java.io.File;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 
 public class LotteryView {
+    private static final Histogram UPDATE_DISPLAY = Metrics.histogram("view.updateDisplay");
+    // The rolling grid is painted on one canvas; -Dlottery.render=nodes keeps a node per card
+    private static final boolean CANVAS_CARDS = !"nodes".equals(System.getProperty("lottery.render"));
+
     private final Stage stage;
     private final FlowPane winnersDisplayPane;
     private final Label currentStatusLabel;
     private final LotteryController controller;
     private final TextField countField;
     private final CheckBox repeatCheck;
-    private final Map<String, Image> imageCache = new HashMap<>();
-
-    public LotteryView(Stage stage, List<User> users) {
+    private final CheckBox weightedCheck;
+    // Rounded thumbnails, bounded by decoded pixel bytes (lottery.imageCacheMB, default 256)
+    private final ImageCache imageCache = new ImageCache(Long.getLong("lottery.imageCacheMB", 256L) * 1024 * 1024);
+    // Decodes photos off the FX thread and refreshes cards when they are ready
+    private final ThumbnailLoader thumbnails = new ThumbnailLoader(imageCache, diskThumbnailCache(), this::thumbnailReady);
+    // Fade prize-plan tiers in one by one on the result dialog
+    private boolean revealTiers = true;
+    // Roster preview grid while its dialog is open
+    private RosterPreviewGrid activePreview;
+    private Dialog<Void> activePreviewDialog;
+    // What has been parsed of the roster being read; previewable before the load ends
+    private StreamedRoster loadingRoster;
+    // Roster file being read in the background, if any
+    private Task<UserLoadResult> rosterLoad;
+    private final ProgressBar loadProgress = new ProgressBar();
+    private final Button startBtn = new Button("开始抽奖");
+    private final CardCanvas cardCanvas;
+    private final CardLabels cardLabels = new CardLabels();
+
+    // Shows the window with an empty roster; loadRoster() fills it in
+    public LotteryView(Stage stage) {
         this.stage = stage;
         this.currentStatusLabel = new Label("请点击开始抽奖");
         this.currentStatusLabel.setFont(Font.font("Microsoft YaHei", 24));
+        loadProgress.setPrefWidth(360);
+        loadProgress.setVisible(false);
+        loadProgress.managedProperty().bind(loadProgress.visibleProperty());
         this.winnersDisplayPane = new FlowPane();
         this.winnersDisplayPane.setAlignment(Pos.CENTER);
         this.winnersDisplayPane.setHgap(10);
@@ -51,11 +84,12 @@ public class LotteryView {
         countField.setPrefWidth(40);
         repeatCheck = new CheckBox("允许重复抽取");
         repeatCheck.setSelected(false);
+        weightedCheck = new CheckBox("按权重抽取");
+        weightedCheck.setSelected(false);
 
-        HBox optionsBox = new HBox(10, countLabel, countField, repeatCheck);
+        HBox optionsBox = new HBox(10, countLabel, countField, repeatCheck, weightedCheck);
         optionsBox.setAlignment(Pos.CENTER);
 
-        Button startBtn = new Button("开始抽奖");
         Button stopBtn = new Button("结束抽奖");
 
         HBox buttonBox = new HBox(20, startBtn, stopBtn);
@@ -63,12 +97,15 @@ public class LotteryView {
         buttonBox.setPadding(new Insets(10, 0, 10, 0));
 
         // Center content that may overflow: status + winners + options
-        VBox centerContent = new VBox(20, currentStatusLabel, winnersDisplayPane, optionsBox);
+        VBox centerContent = new VBox(20, currentStatusLabel, loadProgress, winnersDisplayPane, optionsBox);
         centerContent.setAlignment(Pos.TOP_CENTER);
         centerContent.setPadding(new Insets(20));
         centerContent.setStyle("-fx-background-color: linear-gradient(to bottom, #F5F7FA, #abccf4);");
 
         ScrollPane scroll = new ScrollPane(centerContent);
+        // Center content padding on both sides
+        cardCanvas = new CardCanvas(thumbnails, () -> scroll.getViewportBounds().getWidth() - 40);
+        scroll.viewportBoundsProperty().addListener((obs, o, n) -> cardCanvas.relayout());
         scroll.setFitToWidth(true);
         scroll.setFitToHeight(true);
         scroll.setHbarPolicy(ScrollPane.ScrollBarPolicy.NEVER);
@@ -78,15 +115,23 @@ public class LotteryView {
         MenuItem importItem = new MenuItem("导入名单…");
         MenuItem importImagesItem = new MenuItem("导入图片…");
         MenuItem exportItem = new MenuItem("导出结果…");
+        MenuItem historyItem = new MenuItem("导出抽奖历史…");
         importItem.setAccelerator(new KeyCodeCombination(KeyCode.O, KeyCombination.CONTROL_DOWN));
         exportItem.setAccelerator(new KeyCodeCombination(KeyCode.S, KeyCombination.CONTROL_DOWN));
-        fileMenu.getItems().addAll(importItem, importImagesItem, exportItem, new SeparatorMenuItem());
+        fileMenu.getItems().addAll(importItem, importImagesItem, exportItem, historyItem, new SeparatorMenuItem());
+
+        Menu drawMenu = new Menu("抽奖");
+        MenuItem planItem = new MenuItem("奖项方案…");
+        MenuItem seedItem = new MenuItem("随机种子与复核…");
+        drawMenu.getItems().addAll(planItem, seedItem);
 
         Menu viewMenu = new Menu("查看");
         MenuItem previewItem = new MenuItem("预览名单…");
-        viewMenu.getItems().addAll(previewItem);
+        MenuItem cacheStatsItem = new MenuItem("图片缓存统计…");
+        MenuItem metricsItem = new MenuItem("导出运行指标…");
+        viewMenu.getItems().addAll(previewItem, cacheStatsItem, metricsItem);
 
-        MenuBar menuBar = new MenuBar(fileMenu, viewMenu);
+        MenuBar menuBar = new MenuBar(fileMenu, drawMenu, viewMenu);
 
         BorderPane root = new BorderPane();
         VBox top = new VBox(menuBar);
@@ -98,18 +143,40 @@ public class LotteryView {
         // Scene and stage setup
         Scene scene = new Scene(root, 600, 500);
         stage.setScene(scene);
-        stage.setTitle("抽奖程序");
         applyAppIcon(stage);
         stage.show();
-
-        controller = new LotteryController(users, this);
+        // Decode the placeholder now rather than in the first frame of a draw
+        thumbnails.placeholder(113, 150);
+        Metrics.gauge("imageCache.hits", imageCache::hits);
+        Metrics.gauge("imageCache.misses", imageCache::misses);
+        Metrics.gauge("imageCache.evictions", imageCache::evictions);
+        Metrics.gauge("imageCache.usedBytes", imageCache::usedBytes);
+
+        controller = new LotteryController(this);
+        // The seed is what lets anyone re-check the draws, so it stays on screen
+        stage.setTitle("抽奖程序（随机种子 " + controller.getSeedText() + "）");
+        stage.setOnHidden(e -> {
+            if (rosterLoad != null) rosterLoad.cancel();
+            controller.shutdown();
+        });
 
         startBtn.setOnAction(e -> controller.start());
         stopBtn.setOnAction(e -> controller.stop());
         exportItem.setOnAction(e -> saveLastWinnersToCSV());
+        historyItem.setOnAction(e -> exportHistory());
         importItem.setOnAction(e -> importUsers());
         importImagesItem.setOnAction(e -> importImagesBatch());
+        planItem.setOnAction(e -> editPrizePlan());
+        seedItem.setOnAction(e -> showSeed());
         previewItem.setOnAction(e -> previewRoster());
+        cacheStatsItem.setOnAction(e -> showCacheStats());
+        metricsItem.setOnAction(e -> dumpMetrics());
+    }
+
+    // Pre-scaled photos persist in cache/thumbnails (-Dlottery.thumbnailCacheDir=<dir>, empty to disable)
+    private static DiskThumbnailCache diskThumbnailCache() {
+        String dir = System.getProperty("lottery.thumbnailCacheDir", "cache/thumbnails");
+        return dir.isEmpty() ? null : new DiskThumbnailCache(new File(dir));
     }
 
     // Use images/lottery_icon.png or other candidates
@@ -147,201 +214,228 @@ public class LotteryView {
         }
         File file = chooser.showOpenDialog(stage);
         if (file == null) return;
-        List<User> newUsers = UserLoader.loadUsers(file.getAbsolutePath());
+        loadRoster(file.getAbsoluteFile(), false);
+    }
+
+    // Read a roster file in the background and install it when done; the window stays
+    // usable meanwhile, with the status line and a progress bar following the load, and
+    // the entrants parsed so far can be previewed (an open preview grows with each batch).
+    // Drawing stays disabled until the whole roster is in, so nobody who is further down
+    // the file can be left out of a draw. A newer load replaces one still running. For the
+    // startup roster (initial) a missing file only shows in the status line.
+    public void loadRoster(File file, boolean initial) {
+        if (rosterLoad != null) rosterLoad.cancel();
+        StreamedRoster streamed = new StreamedRoster();
+        Task<UserLoadResult> task = controller.loadRoster(file, batch -> rosterBatch(streamed, batch));
+        rosterLoad = task;
+        loadingRoster = streamed;
+        String previousStatus = currentStatusLabel.getText();
+        currentStatusLabel.textProperty().bind(task.messageProperty());
+        loadProgress.progressProperty().bind(task.progressProperty());
+        loadProgress.setVisible(true);
+        startBtn.setDisable(true);
+
+        task.setOnSucceeded(e -> {
+            loadFinished(task);
+            rosterLoaded(file, task.getValue(), initial);
+        });
+        task.setOnFailed(e -> {
+            loadFinished(task);
+            Throwable ex = task.getException();
+            System.err.println("读取名单时发生错误: " + (ex == null ? "" : ex.getMessage()));
+            currentStatusLabel.setText("读取名单失败，请通过“文件 → 导入名单”重试");
+        });
+        task.setOnCancelled(e -> {
+            if (rosterLoad != task) return;
+            loadFinished(task);
+            currentStatusLabel.setText(previousStatus);
+        });
+
+        Thread worker = new Thread(task, "roster-load");
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    // A batch of the roster being read arrived
+    private void rosterBatch(StreamedRoster streamed, Roster batch) {
+        streamed.add(batch);
+        if (activePreview != null && activePreview.shows(streamed)) {
+            activePreview.usersAdded();
+            activePreviewDialog.setHeaderText("正在读取名单，已读取 " + streamed.size() + " 人");
+        }
+    }
+
+    private void loadFinished(Task<UserLoadResult> task) {
+        if (rosterLoad != task) return;
+        rosterLoad = null;
+        if (activePreview != null && activePreview.shows(loadingRoster)) {
+            activePreviewDialog.setHeaderText("当前导入人数：" + loadingRoster.size());
+        }
+        loadingRoster = null;
+        currentStatusLabel.textProperty().unbind();
+        loadProgress.progressProperty().unbind();
+        loadProgress.setVisible(false);
+        startBtn.setDisable(false);
+    }
+
+    private void rosterLoaded(File file, UserLoadResult result, boolean initial) {
+        if (result.isFailed()) {
+            System.err.println("读取名单时发生错误: " + result.getFailure());
+            if (initial) {
+                currentStatusLabel.setText("未能读取名单，请通过“文件 → 导入名单”选择名单文件");
+            } else {
+                currentStatusLabel.setText("读取名单失败");
+                new Alert(Alert.AlertType.ERROR, "读取名单失败：" + result.getFailure(), ButtonType.OK).showAndWait();
+            }
+            return;
+        }
+        List<User> newUsers = result.getUsers();
         if (newUsers.isEmpty()) {
+            currentStatusLabel.setText("名单为空");
             new Alert(Alert.AlertType.ERROR, "导入失败，请检查文件格式：编号,姓名,图片路径", ButtonType.OK).showAndWait();
             return;
         }
-        controller.replaceUsers(newUsers);
         winnersDisplayPane.getChildren().clear();
         currentStatusLabel.setText("已导入 " + newUsers.size() + " 人，请点击开始抽奖");
+        // May replace the status with a journal recovery notice
+        controller.replaceUsers(newUsers);
+        controller.watchRoster(file);
+        thumbnails.buildAtlas(controller.getRoster(), 113, 150, true);
+        thumbnails.warmDiskCache(controller.getRoster(), 113, 150);
+        if (!result.getErrors().isEmpty()) {
+            showLineErrors(result.getErrors());
+        }
+    }
+
+    // List the roster lines that were skipped during import
+    private void showLineErrors(List<UserLoadResult.LineError> errors) {
+        Alert a = new Alert(Alert.AlertType.WARNING);
+        a.setTitle("名单导入警告");
+        a.setHeaderText("有 " + errors.size() + " 行格式错误，已跳过");
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < Math.min(50, errors.size()); i++) {
+            sb.append(errors.get(i)).append("\n");
+        }
+        if (errors.size() > 50) sb.append("... (共 ").append(errors.size()).append(" 行格式错误)");
+        TextArea ta = new TextArea(sb.toString());
+        ta.setEditable(false);
+        ta.setWrapText(true);
+        ta.setPrefRowCount(Math.min(20, errors.size()));
+        a.getDialogPane().setContent(ta);
+        a.showAndWait();
     }
 
-    // preview the current roster in a dialog
+    // preview the current roster in a dialog, or the part read so far of one being loaded;
+    // only visible rows are ever built
     private void previewRoster() {
-        List<User> snapshot = controller.getUsersSnapshot();
+        boolean loading = loadingRoster != null;
+        List<User> roster = loading ? loadingRoster : controller.getUsersView();
         Dialog<Void> dialog = new Dialog<>();
         dialog.setTitle("名单预览");
-        dialog.setHeaderText("当前导入人数：" + (snapshot == null ? 0 : snapshot.size()));
-
-        FlowPane contentPane = new FlowPane(20, 20);
-        contentPane.setAlignment(Pos.CENTER);
-        contentPane.setPadding(new Insets(20));
+        dialog.setHeaderText(loading ? "正在读取名单，已读取 " + roster.size() + " 人" : "当前导入人数：" + roster.size());
 
-        if (snapshot != null && !snapshot.isEmpty()) {
-            for (User user : snapshot) {
-                VBox card = new VBox(10);
-                card.setAlignment(Pos.CENTER);
-                try {
-                    Image rounded = loadRoundedImage(user.getPhotoPath(), 113, 150);
-                    ImageView iv = new ImageView(rounded);
-                    iv.setFitWidth(113);
-                    iv.setFitHeight(150);
-                    iv.setPreserveRatio(false);
-                    card.getChildren().add(iv);
-                } catch (Exception ex) {
-                    // ignore image errors and only show text
-                }
-                Label nameLabel = new Label(user.getId() + " - " + user.getName());
-                nameLabel.setStyle("-fx-font-size: 16px; -fx-text-fill: #333;");
-                card.getChildren().add(nameLabel);
-
-                contentPane.getChildren().add(card);
-            }
+        if (!roster.isEmpty() || loading) {
+            activePreview = new RosterPreviewGrid(roster, thumbnails);
+            activePreviewDialog = dialog;
+            dialog.getDialogPane().setContent(activePreview.getNode());
         } else {
-            contentPane.getChildren().add(new Label("暂无名单，请先导入。"));
+            Label empty = new Label("暂无名单，请先导入。");
+            empty.setPadding(new Insets(20));
+            dialog.getDialogPane().setContent(empty);
         }
 
-        ScrollPane scrollPane = new ScrollPane(contentPane);
-        scrollPane.setFitToWidth(true);
-        scrollPane.setPrefHeight(400);
-        scrollPane.setStyle("-fx-background-color: transparent;");
-
-        dialog.getDialogPane().setContent(scrollPane);
         dialog.getDialogPane().getButtonTypes().addAll(ButtonType.CLOSE);
         dialog.showAndWait();
+        activePreview = null;
+        activePreviewDialog = null;
     }
 
-    public void updateDisplay(List<User> usersToDisplay) {
+    // Show roster indices[0..n) as the rolling frame
+    public void updateDisplay(Roster roster, int[] indices, int n) {
+        long start = Metrics.now();
+        cardLabels.use(roster);
+        if (CANVAS_CARDS) {
+            if (winnersDisplayPane.getChildren().size() != 1 || winnersDisplayPane.getChildren().get(0) != cardCanvas.getNode()) {
+                winnersDisplayPane.getChildren().setAll(cardCanvas.getNode());
+            }
+            cardCanvas.show(cardLabels, indices, n);
+            UPDATE_DISPLAY.recordSince(start);
+            return;
+        }
         List<Node> currentCards = winnersDisplayPane.getChildren();
         int currentCardCount = currentCards.size();
-        int usersToDisplayCount = usersToDisplay.size();
 
         // Reuse or create cards
-        for (int i = 0; i < usersToDisplayCount; i++) {
-            User user = usersToDisplay.get(i);
-            VBox card;
+        for (int i = 0; i < n; i++) {
             if (i < currentCardCount) {
-                card = (VBox) currentCards.get(i);
-                ImageView imageView = (ImageView) card.getChildren().get(0);
-                Image img = loadRoundedImage(user.getPhotoPath(), 113, 150);
-                imageView.setImage(img);
+                VBox card = (VBox) currentCards.get(i);
+                String path = cardLabels.photoPath(indices[i]);
+                setThumbnail((ImageView) card.getChildren().get(0), path);
+                card.setUserData(path);
                 Label nameIdLabel = (Label) card.getChildren().get(1);
-                nameIdLabel.setText(user.getId() + " - " + user.getName());
+                nameIdLabel.setText(cardLabels.label(indices[i]));
             } else {
-                card = createUserCard(user);
-                winnersDisplayPane.getChildren().add(card);
+                winnersDisplayPane.getChildren().add(createUserCard(roster.get(indices[i])));
             }
         }
 
         // Remove excess cards
-        if (usersToDisplayCount < currentCardCount) {
-            winnersDisplayPane.getChildren().remove(usersToDisplayCount, currentCardCount);
+        if (n < currentCardCount) {
+            winnersDisplayPane.getChildren().remove(n, currentCardCount);
         }
+        UPDATE_DISPLAY.recordSince(start);
     }
 
-    // Load raw image (no rounding). Returns default placeholder when missing.
-    private Image loadImage(String path, double reqWidth, double reqHeight) {
-        if (path == null || path.trim().isEmpty()) {
-            return getDefaultImage(reqWidth, reqHeight);
-        }
+    public void showStatus(String text) {
+        currentStatusLabel.setText(text);
+    }
 
-        String cacheKey = "RAW_" + path + "_" + reqWidth + "_" + reqHeight;
-        if (imageCache.containsKey(cacheKey)) {
-            return imageCache.get(cacheKey);
-        }
+    // The roster was updated in place: drop thumbnails of photos nobody uses any more
+    public void rosterUpdated(RosterDiff diff) {
+        thumbnails.invalidate(diff.getStalePhotos());
+        thumbnails.buildAtlas(diff.getNext(), 113, 150, false);
+        thumbnails.warmDiskCache(diff.getNext(), 113, 150);
+        currentStatusLabel.setText("名单已更新：" + diff.describe() + "（共 " + diff.getNext().size()
+                + " 人，已中奖者保持排除）");
+    }
 
-        try {
-            String uri = null;
-            String p = path.trim();
-            if (p.startsWith("http://") || p.startsWith("https://") || p.startsWith("file:")) {
-                uri = p;
-            } else {
-                File f = new File(p);
-                if (!f.isAbsolute()) {
-                    f = new File(System.getProperty("user.dir"), p);
-                }
-                if (f.exists()) {
-                    uri = f.toURI().toString();
-                } else {
-                    java.net.URL res = getClass().getResource("/" + p);
-                    if (res != null) uri = res.toString();
-                }
-            }
-            if (uri != null) {
-                Image image = new Image(uri, reqWidth, reqHeight, true, true);
-                if (image.isError()) {
-                    Image def = getDefaultImage(reqWidth, reqHeight);
-                    imageCache.put(cacheKey, def);
-                    return def;
-                } else {
-                    imageCache.put(cacheKey, image);
-                    return image;
-                }
-            } else {
-                Image def = getDefaultImage(reqWidth, reqHeight);
-                imageCache.put(cacheKey, def);
-                return def;
-            }
-        } catch (Exception e) {
-            return getDefaultImage(reqWidth, reqHeight);
+    // Start decoding thumbnails for roster indices[0..n) the controller will show next
+    public void prefetch(Roster roster, int[] indices, int n) {
+        cardLabels.use(roster);
+        for (int i = 0; i < n; i++) {
+            thumbnails.prefetch(cardLabels.photoPath(indices[i]), 113, 150);
         }
     }
 
-    // Load and return a rounded (snapshot) image with caching
-    private Image loadRoundedImage(String path, double reqWidth, double reqHeight) {
-        String key = "ROUND_" + (path == null ? "" : path) + "_" + reqWidth + "_" + reqHeight;
-        if (imageCache.containsKey(key)) return imageCache.get(key);
-
-        Image base = loadImage(path, reqWidth, reqHeight);
-        ImageView iv = new ImageView(base);
-        iv.setFitWidth(reqWidth);
-        iv.setFitHeight(reqHeight);
-        iv.setPreserveRatio(false);
-
-        Rectangle clip = new Rectangle(reqWidth, reqHeight);
-        clip.setArcWidth(15);
-        clip.setArcHeight(15);
-        iv.setClip(clip);
-
-        SnapshotParameters params = new SnapshotParameters();
-        params.setFill(Color.TRANSPARENT);
-
-        WritableImage rounded = iv.snapshot(params, null);
-        iv.setClip(null);
-        imageCache.put(key, rounded);
-        return rounded;
+    // A page region when the atlas has the photo, so scrolling reuses uploaded textures
+    private void setThumbnail(ImageView imageView, String path) {
+        ThumbnailAtlas.Slot slot = thumbnails.atlasSlot(path);
+        if (slot != null) {
+            imageView.setImage(slot.page);
+            imageView.setViewport(slot.viewport);
+        } else {
+            imageView.setViewport(null);
+            imageView.setImage(thumbnails.requestRounded(path, 113, 150));
+        }
     }
 
-    private Image getDefaultImage(double reqWidth, double reqHeight) {
-        String[] defaults = new String[] { "images/default.png", "images/default.jpg" };
-        for (String p : defaults) {
-            String key = "__DEFAULT__" + p + "_" + reqWidth + "_" + reqHeight;
-            if (imageCache.containsKey(key)) {
-                return imageCache.get(key);
-            }
-            File f = new File(p);
-            if (f.exists()) {
-                try {
-                    Image img = new Image(f.toURI().toString(), reqWidth, reqHeight, true, true);
-                    if (!img.isError()) {
-                        imageCache.put(key, img);
-                        return img;
-                    }
-                } catch (Exception ignore) {
-                    // ignore
-                }
-            }
-            // try classpath resource
-            java.net.URL res = getClass().getResource("/" + p);
-            if (res != null) {
-                try {
-                    Image img = new Image(res.toString(), reqWidth, reqHeight, true, true);
-                    if (!img.isError()) {
-                        imageCache.put(key, img);
-                        return img;
-                    }
-                } catch (Exception ignore) {
-                }
+    // A background decode finished: swap it into any card still showing that photo
+    private void thumbnailReady(String path, Image img) {
+        for (Node node : winnersDisplayPane.getChildren()) {
+            if (path != null && path.equals(node.getUserData())) {
+                ImageView imageView = (ImageView) ((VBox) node).getChildren().get(0);
+                if (imageView.getViewport() == null) imageView.setImage(img);
             }
         }
-        return new WritableImage((int)Math.max(1, reqWidth), (int)Math.max(1, reqHeight));
+        cardCanvas.thumbnailReady(path, img);
+        if (activePreview != null) {
+            activePreview.thumbnailReady(path, img);
+        }
     }
 
     private VBox createUserCard(User user) {
-        Image roundedImg = loadRoundedImage(user.getPhotoPath(), 113, 150);
-
-        ImageView imageView = new ImageView(roundedImg);
+        ImageView imageView = new ImageView();
+        setThumbnail(imageView, user.getPhotoPath());
         imageView.setFitWidth(113);
         imageView.setFitHeight(150);
         imageView.setPreserveRatio(false);
@@ -351,6 +445,7 @@ public class LotteryView {
 
         VBox box = new VBox(5, imageView, nameIdLabel);
         box.setAlignment(Pos.CENTER);
+        box.setUserData(user.getPhotoPath());
         return box;
     }
 
@@ -365,26 +460,7 @@ public class LotteryView {
 
         if (winners != null && !winners.isEmpty()) {
             for (User user : winners) {
-                VBox card = new VBox(10);
-                card.setAlignment(Pos.CENTER);
-
-                try {
-                    Image rounded = loadRoundedImage(user.getPhotoPath(), 113, 150);
-                    ImageView iv = new ImageView(rounded);
-                    iv.setFitWidth(113);
-                    iv.setFitHeight(150);
-                    iv.setPreserveRatio(false);
-
-                    card.getChildren().add(iv);
-                } catch (Exception e) {
-                    // ignore and only show text
-                }
-
-                Label nameLabel = new Label(user.getId() + " - " + user.getName());
-                nameLabel.setStyle("-fx-font-size: 18px; -fx-text-fill: #333;");
-                card.getChildren().add(nameLabel);
-
-                contentPane.getChildren().add(card);
+                contentPane.getChildren().add(createResultCard(user));
             }
         } else {
             contentPane.getChildren().add(new Label("暂无中奖者"));
@@ -396,7 +472,63 @@ public class LotteryView {
         scrollPane.setStyle("-fx-background-color: transparent;");
 
         dialog.getDialogPane().setContent(scrollPane);
-        // Add buttons: Close and Save CSV
+        addSaveButton(dialog);
+        dialog.showAndWait();
+    }
+
+    // Results of a prize plan, one section per tier. With reveal on, the sections fade in
+    // one after another starting from the lowest tier.
+    public void showPlanResults(List<DrawRound> tiers) {
+        Dialog<Void> dialog = new Dialog<>();
+        dialog.setTitle("抽奖结果");
+        dialog.setHeaderText("各奖项中奖名单：");
+
+        VBox sections = new VBox(20);
+        sections.setPadding(new Insets(20));
+        List<VBox> ordered = new java.util.ArrayList<>();
+        for (DrawRound round : tiers) {
+            Label title = new Label(round.getTier() + "（" + round.getWinners().size() + " 人）");
+            title.setFont(Font.font("Microsoft YaHei", 20));
+            FlowPane cards = new FlowPane(20, 20);
+            cards.setAlignment(Pos.CENTER);
+            for (User user : round.getWinners()) {
+                cards.getChildren().add(createResultCard(user));
+            }
+            if (round.getWinners().isEmpty()) {
+                cards.getChildren().add(new Label("暂无中奖者"));
+            }
+            VBox section = new VBox(10, title, cards);
+            section.setAlignment(Pos.TOP_CENTER);
+            sections.getChildren().add(section);
+            ordered.add(0, section);
+        }
+
+        ScrollPane scrollPane = new ScrollPane(sections);
+        scrollPane.setFitToWidth(true);
+        scrollPane.setPrefHeight(400);
+        scrollPane.setStyle("-fx-background-color: transparent;");
+        dialog.getDialogPane().setContent(scrollPane);
+        addSaveButton(dialog);
+
+        if (revealTiers) {
+            Timeline reveal = new Timeline();
+            for (int i = 0; i < ordered.size(); i++) {
+                VBox section = ordered.get(i);
+                section.setOpacity(0);
+                reveal.getKeyFrames().add(new KeyFrame(Duration.seconds(1.5 * i), e -> {
+                    FadeTransition fade = new FadeTransition(Duration.millis(600), section);
+                    fade.setToValue(1);
+                    fade.play();
+                }));
+            }
+            dialog.setOnShown(e -> reveal.play());
+            dialog.setOnHidden(e -> reveal.stop());
+        }
+        dialog.showAndWait();
+    }
+
+    // Add buttons: Close and Save CSV
+    private void addSaveButton(Dialog<Void> dialog) {
         ButtonType saveType = new ButtonType("保存为CSV", ButtonBar.ButtonData.OK_DONE);
         dialog.getDialogPane().getButtonTypes().addAll(saveType, ButtonType.CLOSE);
 
@@ -406,8 +538,62 @@ public class LotteryView {
             evt.consume();
             saveLastWinnersToCSV();
         });
+    }
 
-        dialog.showAndWait();
+    private VBox createResultCard(User user) {
+        VBox card = new VBox(10);
+        card.setAlignment(Pos.CENTER);
+
+        try {
+            Image rounded = thumbnails.loadRounded(user.getPhotoPath(), 113, 150);
+            ImageView iv = new ImageView(rounded);
+            iv.setFitWidth(113);
+            iv.setFitHeight(150);
+            iv.setPreserveRatio(false);
+
+            card.getChildren().add(iv);
+        } catch (Exception e) {
+            // ignore and only show text
+        }
+
+        Label nameLabel = new Label(user.getId() + " - " + user.getName());
+        nameLabel.setStyle("-fx-font-size: 18px; -fx-text-fill: #333;");
+        card.getChildren().add(nameLabel);
+        return card;
+    }
+
+    // Edit the prize plan; an empty plan goes back to single-count draws
+    private void editPrizePlan() {
+        Dialog<ButtonType> dialog = new Dialog<>();
+        dialog.setTitle("奖项方案");
+        dialog.setHeaderText("每行一个奖项，格式：名称:人数（从最高奖项开始填写）\n留空则按“每次抽取人数”单独抽取");
+        PrizePlan current = controller.getPrizePlan();
+        TextArea text = new TextArea(current == null ? "特等奖:1\n一等奖:10\n三等奖:200" : current.format());
+        text.setPrefRowCount(8);
+        CheckBox revealCheck = new CheckBox("逐级揭晓动画");
+        revealCheck.setSelected(revealTiers);
+        VBox content = new VBox(10, text, revealCheck);
+        dialog.getDialogPane().setContent(content);
+        dialog.getDialogPane().getButtonTypes().addAll(ButtonType.OK, ButtonType.CANCEL);
+        if (dialog.showAndWait().orElse(ButtonType.CANCEL) != ButtonType.OK) return;
+
+        revealTiers = revealCheck.isSelected();
+        if (text.getText().trim().isEmpty()) {
+            controller.setPrizePlan(null);
+            currentStatusLabel.setText("已清除奖项方案，请点击开始抽奖");
+            return;
+        }
+        try {
+            PrizePlan plan = PrizePlan.parse(text.getText());
+            controller.setPrizePlan(plan);
+            StringBuilder sb = new StringBuilder("奖项方案：");
+            for (PrizePlan.Tier t : plan.getTiers()) {
+                sb.append(t.getName()).append("×").append(t.getCount()).append("  ");
+            }
+            currentStatusLabel.setText(sb.toString().trim());
+        } catch (IllegalArgumentException ex) {
+            new Alert(Alert.AlertType.ERROR, ex.getMessage(), ButtonType.OK).showAndWait();
+        }
     }
 
     // 提供接口给控制器读取, 获取人数
@@ -423,6 +609,10 @@ public class LotteryView {
         return repeatCheck.isSelected();
     }
 
+    public boolean isWeighted() {
+        return weightedCheck.isSelected();
+    }
+
     private void saveLastWinnersToCSV() {
         if (!controller.hasLastWinners()) {
             new Alert(Alert.AlertType.INFORMATION, "暂无可保存的抽奖结果，请先完成一次抽奖。", ButtonType.OK).showAndWait();
@@ -440,17 +630,129 @@ public class LotteryView {
             file = new File(file.getParentFile(), file.getName() + ".csv");
         }
 
-        boolean ok = controller.exportLastWinnersToCSV(file);
-        if (ok) {
-            new Alert(Alert.AlertType.INFORMATION, "保存成功：" + file.getAbsolutePath(), ButtonType.OK).showAndWait();
-        } else {
+        runExport(controller.exportLastWinners(file), file);
+    }
+
+    // Export all rounds, or a range of them, as CSV or JSON Lines
+    private void exportHistory() {
+        int rounds = controller.roundCount();
+        if (rounds == 0) {
+            new Alert(Alert.AlertType.INFORMATION, "暂无抽奖记录，请先完成一次抽奖。", ButtonType.OK).showAndWait();
+            return;
+        }
+        Dialog<ButtonType> dialog = new Dialog<>();
+        dialog.setTitle("导出抽奖历史");
+        dialog.setHeaderText("共 " + rounds + " 轮，选择要导出的轮次与格式");
+        Spinner<Integer> fromSpinner = new Spinner<>(1, rounds, 1);
+        Spinner<Integer> toSpinner = new Spinner<>(1, rounds, rounds);
+        fromSpinner.setEditable(true);
+        toSpinner.setEditable(true);
+        ComboBox<String> formatBox = new ComboBox<>();
+        formatBox.getItems().addAll("CSV", "JSON Lines");
+        formatBox.getSelectionModel().selectFirst();
+        HBox range = new HBox(10, new Label("从第"), fromSpinner, new Label("轮到第"), toSpinner, new Label("轮"));
+        range.setAlignment(Pos.CENTER_LEFT);
+        HBox formatRow = new HBox(10, new Label("格式："), formatBox);
+        formatRow.setAlignment(Pos.CENTER_LEFT);
+        dialog.getDialogPane().setContent(new VBox(10, range, formatRow));
+        dialog.getDialogPane().getButtonTypes().addAll(ButtonType.OK, ButtonType.CANCEL);
+        if (dialog.showAndWait().orElse(ButtonType.CANCEL) != ButtonType.OK) return;
+
+        int from = Math.min(fromSpinner.getValue(), toSpinner.getValue());
+        int to = Math.max(fromSpinner.getValue(), toSpinner.getValue());
+        boolean json = formatBox.getSelectionModel().getSelectedIndex() == 1;
+        String ext = json ? ".jsonl" : ".csv";
+        FileChooser chooser = new FileChooser();
+        chooser.setTitle("导出抽奖历史");
+        chooser.getExtensionFilters().add(json
+                ? new FileChooser.ExtensionFilter("JSON Lines 文件 (*.jsonl)", "*.jsonl")
+                : new FileChooser.ExtensionFilter("CSV 文件 (*.csv)", "*.csv"));
+        String ts = LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd_HHmmss"));
+        chooser.setInitialFileName("抽奖历史_" + ts + ext);
+        File file = chooser.showSaveDialog(stage);
+        if (file == null) return;
+        if (!file.getName().toLowerCase().endsWith(ext)) {
+            file = new File(file.getParentFile(), file.getName() + ext);
+        }
+        runExport(controller.exportHistory(from, to, file,
+                json ? ResultExporter.Format.JSON_LINES : ResultExporter.Format.CSV), file);
+    }
+
+    // Write on a background thread behind a progress dialog that can cancel it
+    private void runExport(Task<Long> task, File file) {
+        Dialog<Void> progress = progressDialog(task, "正在导出", file.getName());
+
+        task.setOnSucceeded(e -> {
+            progress.setOnCloseRequest(null);
+            progress.close();
+            new Alert(Alert.AlertType.INFORMATION, "保存成功，共 " + task.getValue() + " 条：" + file.getAbsolutePath(),
+                    ButtonType.OK).showAndWait();
+        });
+        task.setOnFailed(e -> {
+            progress.setOnCloseRequest(null);
+            progress.close();
+            Throwable ex = task.getException();
+            System.err.println("导出结果时发生错误: " + (ex == null ? "" : ex.getMessage()));
             new Alert(Alert.AlertType.ERROR, "保存失败，请重试或更换位置。", ButtonType.OK).showAndWait();
+        });
+        // A cancelled export deletes its partial file itself, on the export thread
+
+        Thread worker = new Thread(task, "result-export");
+        worker.setDaemon(true);
+        worker.start();
+        progress.show();
+    }
+
+    // Write every runtime metric to a JSON file (also reachable over JMX)
+    private void dumpMetrics() {
+        FileChooser chooser = new FileChooser();
+        chooser.setTitle("导出运行指标");
+        chooser.getExtensionFilters().add(new FileChooser.ExtensionFilter("JSON 文件 (*.json)", "*.json"));
+        String ts = LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd_HHmmss"));
+        chooser.setInitialFileName("metrics_" + ts + ".json");
+        File file = chooser.showSaveDialog(stage);
+        if (file == null) return;
+        try {
+            File written = Metrics.dump(file);
+            new Alert(Alert.AlertType.INFORMATION, "已导出：" + written.getPath(), ButtonType.OK).showAndWait();
+        } catch (java.io.IOException ex) {
+            System.err.println("导出运行指标失败: " + ex.getMessage());
+            new Alert(Alert.AlertType.ERROR, "导出运行指标失败，请重试或更换位置。", ButtonType.OK).showAndWait();
         }
     }
 
-    // Batch import images from a selected directory and match them to users by id or name
+    // The event seed and how to verify the recorded draws with it
+    private void showSeed() {
+        String seed = controller.getSeedText();
+        TextArea text = new TextArea("随机种子: " + seed
+                + "\n\n每轮中奖名单由该种子、名单与抽取设置决定，并与种子一起记入抽奖日志（"
+                + controller.getJournalPath() + "）。凭名单文件与日志即可复核任意一轮或整场活动：\n\n"
+                + "java -cp out app.LotteryCli --roster <名单文件> --verify " + controller.getJournalPath() + " --seed " + seed);
+        text.setEditable(false);
+        text.setWrapText(true);
+        text.setPrefRowCount(7);
+        Alert a = new Alert(Alert.AlertType.INFORMATION);
+        a.setTitle("随机种子与复核");
+        a.setHeaderText("本次抽奖随机种子: " + seed);
+        a.getDialogPane().setContent(text);
+        a.showAndWait();
+    }
+
+    private void showCacheStats() {
+        String text = imageCache.describe()
+                + String.format("\n缩略图平均生成耗时: %.0f µs", thumbnails.averageRoundMicros())
+                + "\n" + thumbnails.describeDisk()
+                + "\n" + thumbnails.describeAtlas();
+        Alert a = new Alert(Alert.AlertType.INFORMATION, text, ButtonType.OK);
+        a.setTitle("图片缓存统计");
+        a.setHeaderText(null);
+        a.showAndWait();
+    }
+
+    // Batch import images from a selected directory and match them to users by id or name.
+    // Scanning and matching run in the background behind a progress dialog.
     private void importImagesBatch() {
-        List<User> current = controller.getUsersSnapshot();
+        Roster current = controller.getRoster();
         if (current == null || current.isEmpty()) {
             new Alert(Alert.AlertType.INFORMATION, "当前没有导入任何名单，请先导入名单文件。", ButtonType.OK).showAndWait();
             return;
@@ -463,52 +765,60 @@ public class LotteryView {
         File dir = dc.showDialog(stage);
         if (dir == null) return;
 
-        // collect image files recursively
-        List<File> imageFiles = new java.util.ArrayList<>();
-        collectImageFiles(dir, imageFiles);
-        if (imageFiles.isEmpty()) {
+        Task<PhotoMatcher.Result> task = controller.matchPhotos(dir);
+        Dialog<Void> progress = progressDialog(task, "正在导入图片", dir.getName());
+        task.setOnSucceeded(e -> {
+            progress.setOnCloseRequest(null);
+            progress.close();
+            imagesMatched(task.getValue());
+        });
+        task.setOnFailed(e -> {
+            progress.setOnCloseRequest(null);
+            progress.close();
+            Throwable ex = task.getException();
+            System.err.println("批量导入图片时发生错误: " + (ex == null ? "" : ex.getMessage()));
+            new Alert(Alert.AlertType.ERROR, "批量导入图片失败。", ButtonType.OK).showAndWait();
+        });
+
+        Thread worker = new Thread(task, "photo-import");
+        worker.setDaemon(true);
+        worker.start();
+        progress.show();
+    }
+
+    // Progress bar and status line for a background task; closing it cancels the task
+    private Dialog<Void> progressDialog(Task<?> task, String title, String header) {
+        ProgressBar bar = new ProgressBar();
+        bar.setPrefWidth(360);
+        bar.progressProperty().bind(task.progressProperty());
+        Label status = new Label();
+        status.textProperty().bind(task.messageProperty());
+        Dialog<Void> progress = new Dialog<>();
+        progress.initOwner(stage);
+        progress.setTitle(title);
+        progress.setHeaderText(header);
+        progress.getDialogPane().setContent(new VBox(8, bar, status));
+        progress.getDialogPane().getButtonTypes().add(ButtonType.CANCEL);
+        progress.setOnCloseRequest(e -> task.cancel(true));
+        return progress;
+    }
+
+    private void imagesMatched(PhotoMatcher.Result result) {
+        if (result.getFileCount() == 0) {
             new Alert(Alert.AlertType.INFORMATION, "所选目录中未发现图片文件。", ButtonType.OK).showAndWait();
             return;
         }
-
-        // build a map from filenameWithoutExt -> file
-        Map<String, File> nameMap = new HashMap<>();
-        for (File f : imageFiles) {
-            String name = f.getName();
-            int idx = name.lastIndexOf('.');
-            String base = idx > 0 ? name.substring(0, idx) : name;
-            nameMap.put(base.toLowerCase(), f);
-        }
-
-        int matched = 0;
-        List<User> updated = new java.util.ArrayList<>();
-        List<String> unmatched = new java.util.ArrayList<>();
-        for (User u : current) {
-            String id = u.getId();
-            String name = u.getName();
-            File match = null;
-            if (id != null && !id.isEmpty()) match = nameMap.get(id.toLowerCase());
-            if (match == null && name != null && !name.isEmpty()) match = nameMap.get(name.toLowerCase());
-            if (match == null) {
-                // try more permissive: filenames that contain id or name
-                for (Map.Entry<String, File> e : nameMap.entrySet()) {
-                    if (id != null && !id.isEmpty() && e.getKey().contains(id.toLowerCase())) { match = e.getValue(); break; }
-                    if (name != null && !name.isEmpty() && e.getKey().contains(name.toLowerCase())) { match = e.getValue(); break; }
-                }
-            }
-            if (match != null) {
-                matched++;
-                updated.add(new User(u.getId(), u.getName(), match.getAbsolutePath()));
-            } else {
-                unmatched.add(u.getId() + " - " + u.getName());
-                updated.add(new User(u.getId(), u.getName(), u.getPhotoPath()));
-            }
+        if (result.getDiff().getBase() != controller.getRoster()) {
+            new Alert(Alert.AlertType.WARNING, "导入期间名单已更新，请重新批量导入图片。", ButtonType.OK).showAndWait();
+            return;
         }
-
-        controller.replaceUsers(updated);
+        // Only the photo paths change: applied as a diff, so draw state and unchanged
+        // thumbnails are kept
+        controller.applyRosterUpdate(result.getDiff());
         winnersDisplayPane.getChildren().clear();
 
-        String msg = "已匹配图片: " + matched + "，未匹配: " + unmatched.size();
+        List<String> unmatched = result.getUnmatched();
+        String msg = "已匹配图片: " + result.getMatched() + "，未匹配: " + unmatched.size();
         Alert a = new Alert(Alert.AlertType.INFORMATION);
         a.setTitle("批量导入图片完成");
         a.setHeaderText(msg);
@@ -526,18 +836,4 @@ public class LotteryView {
         }
         a.showAndWait();
     }
-
-    private void collectImageFiles(File dir, List<File> out) {
-        File[] files = dir.listFiles();
-        if (files == null) return;
-        for (File f : files) {
-            if (f.isDirectory()) collectImageFiles(f, out);
-            else {
-                String n = f.getName().toLowerCase();
-                if (n.endsWith(".png") || n.endsWith(".jpg") || n.endsWith(".jpeg") || n.endsWith(".bmp") || n.endsWith(".gif") || n.endsWith(".webp")) {
-                    out.add(f);
-                }
-            }
-        }
-    }
 }
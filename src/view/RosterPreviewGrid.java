@@ -0,0 +1,160 @@
+package view;
+
+import javafx.collections.ObservableListBase;
+import javafx.geometry.Pos;
+import javafx.scene.control.Label;
+import javafx.scene.control.ListCell;
+import javafx.scene.control.ListView;
+import javafx.scene.image.Image;
+import javafx.scene.image.ImageView;
+import javafx.scene.layout.HBox;
+import javafx.scene.layout.VBox;
+import model.User;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// Virtualized card grid for the roster preview.
+// A ListView of rows: only the visible rows get cells, cells are recycled while scrolling
+// and their thumbnails are requested lazily, so opening it costs the same for 10 or
+// 100k users. The row list is computed from the roster size, never materialized.
+final class RosterPreviewGrid {
+    private static final double CARD_WIDTH = 140;
+    private static final double GAP = 20;
+
+    private final List<User> users;
+    private final ThumbnailLoader thumbnails;
+    private final ListView<Integer> listView = new ListView<>();
+    // Every card ever created by a cell; bounded by the visible rows
+    private final List<VBox> cards = new ArrayList<>();
+    private int columns = 1;
+    private RowIndices rows;
+
+    RosterPreviewGrid(List<User> users, ThumbnailLoader thumbnails) {
+        this.users = users;
+        this.thumbnails = thumbnails;
+        listView.setCellFactory(lv -> new RowCell());
+        listView.setFocusTraversable(false);
+        listView.setPrefSize(700, 400);
+        listView.setStyle("-fx-background-color: transparent;");
+        rows = new RowIndices(rowCount());
+        listView.setItems(rows);
+        listView.widthProperty().addListener((obs, oldW, newW) -> {
+            int cols = Math.max(1, (int) ((newW.doubleValue() - GAP) / (CARD_WIDTH + GAP)));
+            if (cols != columns) {
+                columns = cols;
+                rows = new RowIndices(rowCount());
+                listView.setItems(rows);
+            }
+        });
+    }
+
+    ListView<Integer> getNode() {
+        return listView;
+    }
+
+    private int rowCount() {
+        return (users.size() + columns - 1) / columns;
+    }
+
+    boolean shows(List<User> list) {
+        return users == list;
+    }
+
+    // More entrants were appended to the list (a roster still being read): add their rows
+    // and refill the last one, keeping the scroll position
+    void usersAdded() {
+        rows.grow(rowCount());
+        listView.refresh();
+    }
+
+    // A background decode finished: update the visible cards showing that photo
+    void thumbnailReady(String path, Image img) {
+        for (VBox card : cards) {
+            if (path != null && path.equals(card.getUserData())) {
+                ((ImageView) card.getChildren().get(0)).setImage(img);
+            }
+        }
+    }
+
+    private VBox createCard() {
+        ImageView iv = new ImageView();
+        iv.setFitWidth(113);
+        iv.setFitHeight(150);
+        iv.setPreserveRatio(false);
+        Label nameLabel = new Label();
+        nameLabel.setStyle("-fx-font-size: 16px; -fx-text-fill: #333;");
+        VBox card = new VBox(10, iv, nameLabel);
+        card.setAlignment(Pos.CENTER);
+        card.setPrefWidth(CARD_WIDTH);
+        cards.add(card);
+        return card;
+    }
+
+    private final class RowCell extends ListCell<Integer> {
+        private final HBox row = new HBox(GAP);
+
+        RowCell() {
+            row.setAlignment(Pos.CENTER);
+            setStyle("-fx-background-color: transparent; -fx-padding: 10 0 10 0;");
+        }
+
+        @Override
+        protected void updateItem(Integer item, boolean empty) {
+            super.updateItem(item, empty);
+            if (empty || item == null) {
+                setGraphic(null);
+                return;
+            }
+            int cols = columns;
+            while (row.getChildren().size() < cols) {
+                row.getChildren().add(createCard());
+            }
+            for (int c = 0; c < row.getChildren().size(); c++) {
+                VBox card = (VBox) row.getChildren().get(c);
+                int index = item * cols + c;
+                boolean used = c < cols && index < users.size();
+                card.setVisible(used);
+                card.setManaged(c < cols);
+                if (!used) {
+                    card.setUserData(null);
+                    continue;
+                }
+                User user = users.get(index);
+                ImageView iv = (ImageView) card.getChildren().get(0);
+                iv.setImage(thumbnails.requestRounded(user.getPhotoPath(), 113, 150));
+                ((Label) card.getChildren().get(1)).setText(user.getId() + " - " + user.getName());
+                card.setUserData(user.getPhotoPath());
+            }
+            setGraphic(row);
+        }
+    }
+
+    // Row numbers 0..rows-1 without storing them
+    private static final class RowIndices extends ObservableListBase<Integer> {
+        private int rows;
+
+        RowIndices(int rows) {
+            this.rows = rows;
+        }
+
+        void grow(int newRows) {
+            if (newRows <= rows) return;
+            beginChange();
+            nextAdd(rows, newRows);
+            rows = newRows;
+            endChange();
+        }
+
+        @Override
+        public Integer get(int index) {
+            if (index < 0 || index >= rows) throw new IndexOutOfBoundsException(index);
+            return index;
+        }
+
+        @Override
+        public int size() {
+            return rows;
+        }
+    }
+}
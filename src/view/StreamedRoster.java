@@ -0,0 +1,42 @@
+package view;
+
+import model.Roster;
+import model.User;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.RandomAccess;
+
+// The batches of a roster still being read, as one list: each batch stays in its compact
+// columnar form and entrants are only built when a preview cell shows them. FX thread only.
+final class StreamedRoster extends AbstractList<User> implements RandomAccess {
+    private final List<Roster> batches = new ArrayList<>();
+    // starts[b] is the index of the first entrant of batch b
+    private int[] starts = new int[8];
+    private int size;
+
+    void add(Roster batch) {
+        if (batch.isEmpty()) return;
+        if (batches.size() == starts.length) {
+            starts = Arrays.copyOf(starts, starts.length * 2);
+        }
+        starts[batches.size()] = size;
+        batches.add(batch);
+        size += batch.size();
+    }
+
+    @Override
+    public User get(int index) {
+        if (index < 0 || index >= size) throw new IndexOutOfBoundsException(index);
+        int b = Arrays.binarySearch(starts, 0, batches.size(), index);
+        if (b < 0) b = -b - 2;
+        return batches.get(b).get(index - starts[b]);
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+}
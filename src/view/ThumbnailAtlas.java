@@ -0,0 +1,149 @@
+package view;
+
+import javafx.geometry.Rectangle2D;
+import javafx.scene.image.PixelFormat;
+import javafx.scene.image.WritableImage;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Rounded card thumbnails packed into a few 2048x2048 pages for the rolling display.
+// Cards draw a region of a page instead of one image per photo, so once the pages are on
+// the GPU a frame needs no texture uploads. Pages are filled by one builder thread and
+// published when full; a published page is never written again, so what the renderer sees
+// does not change under it. When a build ends mid-page, a copy of the rows filled so far
+// is published instead and the page itself keeps filling in the next build, so frequent
+// small builds (roster edits, photo imports) do not each leave a page behind. Pages and
+// that copy together are bounded by a byte budget (a page is closed early rather than
+// copied when the copy would not fit); photos beyond it use the ordinary thumbnail cache.
+final class ThumbnailAtlas {
+    static final int PAGE_SIZE = 2048;
+    private static final long PAGE_BYTES = (long) PAGE_SIZE * PAGE_SIZE * 4;
+
+    // Where a thumbnail sits: page plus the region of it
+    static final class Slot {
+        final WritableImage page;
+        final Rectangle2D viewport;
+
+        Slot(WritableImage page, Rectangle2D viewport) {
+            this.page = page;
+            this.viewport = viewport;
+        }
+    }
+
+    private final int thumbWidth;
+    private final int thumbHeight;
+    private final int perRow;
+    private final int perPage;
+    private final long budgetBytes;
+    private final int maxPages;
+    private final Map<String, Slot> published = new ConcurrentHashMap<>();
+
+    private volatile int pageCount;
+    // Size of the published copy of the page being filled, 0 when there is none
+    private volatile long copyBytes;
+    // Builder thread only: the page being filled and the regions of the photos on it
+    private final Map<String, Rectangle2D> onPage = new HashMap<>();
+    private WritableImage filling;
+    private int used;
+
+    ThumbnailAtlas(long budgetBytes, int thumbWidth, int thumbHeight) {
+        this.thumbWidth = thumbWidth;
+        this.thumbHeight = thumbHeight;
+        this.perRow = PAGE_SIZE / thumbWidth;
+        this.perPage = perRow * (PAGE_SIZE / thumbHeight);
+        this.budgetBytes = budgetBytes;
+        this.maxPages = (int) Math.min(Integer.MAX_VALUE, budgetBytes / PAGE_BYTES);
+    }
+
+    // The thumbnail's slot, or null if it is not (yet) in a published page
+    Slot get(String path) {
+        return path == null ? null : published.get(path);
+    }
+
+    // Builder thread: whether path already has (or is getting) a slot
+    boolean contains(String path) {
+        return published.containsKey(path) || onPage.containsKey(path);
+    }
+
+    // Builder thread: whether another thumbnail still fits in the budget
+    boolean hasRoom() {
+        return (filling != null && used < perPage) || pageCount < maxPages;
+    }
+
+    // Builder thread: copy premultiplied ARGB pixels (thumbWidth x thumbHeight) into the
+    // next free slot; the slot becomes visible when its page is published
+    boolean add(String path, int[] argb) {
+        if (filling == null || used == perPage) {
+            if (pageCount >= maxPages) return false;
+            filling = new WritableImage(PAGE_SIZE, PAGE_SIZE);
+            pageCount++;
+            used = 0;
+        }
+        int x = (used % perRow) * thumbWidth;
+        int y = (used / perRow) * thumbHeight;
+        filling.getPixelWriter().setPixels(x, y, thumbWidth, thumbHeight, PixelFormat.getIntArgbPreInstance(), argb, 0, thumbWidth);
+        onPage.put(path, new Rectangle2D(x, y, thumbWidth, thumbHeight));
+        if (++used == perPage) publish();
+        return true;
+    }
+
+    // Builder thread: make every thumbnail added so far visible. A full page is published
+    // as it is and later thumbnails go to a new one; a partly filled page is published as a
+    // copy of its used rows, and filling continues on the original. The copy replaces the
+    // previous one; if it would not fit in the budget the page is published and closed.
+    void publish() {
+        if (filling == null || onPage.isEmpty()) return;
+        WritableImage image = filling;
+        if (used < perPage) {
+            int rows = (used + perRow - 1) / perRow;
+            long copy = (long) PAGE_SIZE * rows * thumbHeight * 4;
+            if ((long) pageCount * PAGE_BYTES + copy <= budgetBytes) {
+                image = new WritableImage(filling.getPixelReader(), PAGE_SIZE, rows * thumbHeight);
+                copyBytes = copy;
+            }
+        }
+        for (Map.Entry<String, Rectangle2D> e : onPage.entrySet()) {
+            published.put(e.getKey(), new Slot(image, e.getValue()));
+        }
+        if (image == filling) {
+            onPage.clear();
+            filling = null;
+            copyBytes = 0;
+        }
+    }
+
+    // The photos changed: hide their slots at once (any thread)
+    void remove(Collection<String> paths) {
+        for (String p : paths) published.remove(p);
+    }
+
+    // Builder thread: forget the photos entirely, so a later build packs them again and a
+    // later publish cannot bring the old pixels back (their space is not reused)
+    void forget(Collection<String> paths) {
+        for (String p : paths) {
+            onPage.remove(p);
+            published.remove(p);
+        }
+    }
+
+    int size() {
+        return published.size();
+    }
+
+    int pageCount() {
+        return pageCount;
+    }
+
+    // Pages plus the published copy of the page being filled
+    long bytes() {
+        return (long) pageCount * PAGE_BYTES + copyBytes;
+    }
+
+    String describe() {
+        return String.format("缩略图图集: %d 张，%d 页，占用 %.1f MB（含未满页副本 %.1f MB，上限 %.1f MB）",
+                size(), pageCount(), bytes() / 1048576.0, copyBytes / 1048576.0, budgetBytes / 1048576.0);
+    }
+}
@@ -0,0 +1,458 @@
+package view;
+
+import javafx.application.Platform;
+import javafx.scene.image.Image;
+import javafx.scene.image.PixelFormat;
+import javafx.scene.image.PixelReader;
+import javafx.scene.image.WritableImage;
+import metrics.Histogram;
+import metrics.Metrics;
+import model.User;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+
+// Rounded photo thumbnails for the cards.
+// Photos are read, decoded and rounded on a small pool of daemon threads so the FX thread
+// never waits on disk, JPEG decoding or rendering while a draw is scrolling: callers get
+// the cached thumbnail or a placeholder, and onReady is invoked on the FX thread once it
+// is done. Local photos are decoded through the disk cache (if any), which a background
+// warm-up fills for the whole roster.
+final class ThumbnailLoader {
+    private static final int QUEUE_CAPACITY = 256;
+    private static final String ROUND_PREFIX = "ROUND_";
+    private static final double CORNER_ARC = 15;
+    private static final int CORNER_SIZE = (int) Math.ceil(CORNER_ARC / 2);
+    private static volatile float[] cornerMask;
+
+    private static final Histogram DECODE = Metrics.histogram("thumbnail.decode");
+    private static final Histogram DISK_LOAD = Metrics.histogram("thumbnail.diskLoad");
+    // Atlas page budget (-Dlottery.atlasMB, default 128; 0 disables)
+    private static final long ATLAS_BUDGET = Long.getLong("lottery.atlasMB", 128L) * 1024 * 1024;
+
+    private final ImageCache cache;
+    // Null when disabled
+    private final DiskThumbnailCache disk;
+    private final BiConsumer<String, Image> onReady;
+    private final Set<String> inFlight = ConcurrentHashMap.newKeySet();
+    private final Map<String, Image> defaultImages = new ConcurrentHashMap<>();
+    // Rounded placeholders per size, FX thread only
+    private final Map<String, Image> placeholders = new HashMap<>();
+    private final ThreadPoolExecutor decoder;
+    private final AtomicLong roundedCount = new AtomicLong();
+    private final AtomicLong roundedNanos = new AtomicLong();
+    // One low-priority thread fills the disk cache; a newer warm-up supersedes the running one
+    private final ExecutorService warmer;
+    private final AtomicInteger warmGeneration = new AtomicInteger();
+    // Card thumbnails packed into pages for the rolling display, built on its own thread
+    private volatile ThumbnailAtlas atlas;
+    private final ExecutorService atlasBuilder;
+    private final AtomicInteger atlasGeneration = new AtomicInteger();
+
+    ThumbnailLoader(ImageCache cache, DiskThumbnailCache disk, BiConsumer<String, Image> onReady) {
+        this.cache = cache;
+        this.disk = disk;
+        this.onReady = onReady;
+        this.warmer = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "thumbnail-warmup");
+            t.setDaemon(true);
+            t.setPriority(Thread.MIN_PRIORITY);
+            return t;
+        });
+        this.atlasBuilder = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "thumbnail-atlas");
+            t.setDaemon(true);
+            t.setPriority(Thread.MIN_PRIORITY);
+            return t;
+        });
+        Metrics.gauge("atlas.thumbnails", () -> atlas == null ? 0 : atlas.size());
+        Metrics.gauge("atlas.bytes", () -> atlas == null ? 0 : atlas.bytes());
+        int threads = Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+        // When the queue is full the oldest request is dropped: by then the card that
+        // asked for it has usually scrolled on to someone else
+        RejectedExecutionHandler dropOldest = (task, executor) -> {
+            if (executor.isShutdown()) return;
+            Runnable oldest = executor.getQueue().poll();
+            if (oldest instanceof Decode) inFlight.remove(((Decode) oldest).key);
+            executor.execute(task);
+        };
+        this.decoder = new ThreadPoolExecutor(threads, threads, 30, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(QUEUE_CAPACITY), r -> {
+                    Thread t = new Thread(r, "thumbnail-decoder");
+                    t.setDaemon(true);
+                    return t;
+                }, dropOldest);
+        this.decoder.allowCoreThreadTimeOut(true);
+    }
+
+    private static String key(String path, double reqWidth, double reqHeight) {
+        return ROUND_PREFIX + (path == null ? "" : path) + "_" + reqWidth + "_" + reqHeight;
+    }
+
+    // Cached thumbnail, or decode it right away. For dialogs shown outside a draw.
+    Image loadRounded(String path, double reqWidth, double reqHeight) {
+        String key = key(path, reqWidth, reqHeight);
+        Image cached = cache.get(key);
+        if (cached != null) return cached;
+
+        Image rounded = round(loadScaled(path, reqWidth, reqHeight), reqWidth, reqHeight);
+        cache.put(key, rounded);
+        return rounded;
+    }
+
+    // Cached thumbnail, or the placeholder while it is decoded in the background
+    Image requestRounded(String path, double reqWidth, double reqHeight) {
+        Image cached = cache.get(key(path, reqWidth, reqHeight));
+        if (cached != null) return cached;
+        submit(path, reqWidth, reqHeight);
+        return placeholder(reqWidth, reqHeight);
+    }
+
+    // Start decoding a thumbnail that is about to be shown
+    void prefetch(String path, double reqWidth, double reqHeight) {
+        if (!cache.contains(key(path, reqWidth, reqHeight))) {
+            submit(path, reqWidth, reqHeight);
+        }
+    }
+
+    // Forget the thumbnails of these photo paths (any size), e.g. after a roster update
+    int invalidate(Collection<String> paths) {
+        if (paths.isEmpty()) return 0;
+        ThumbnailAtlas current = atlas;
+        if (current != null) {
+            List<String> changed = new ArrayList<>(paths);
+            current.remove(changed);
+            // Runs after any build in progress, which may still publish the old slots
+            atlasBuilder.execute(() -> current.forget(changed));
+        }
+        Set<String> stale = new HashSet<>(paths);
+        return cache.removeIf(key -> key.startsWith(ROUND_PREFIX) && stale.contains(pathOf(key)));
+    }
+
+    // Path part of a "ROUND_<path>_<w>_<h>" key
+    private static String pathOf(String key) {
+        int h = key.lastIndexOf('_');
+        int w = h > 0 ? key.lastIndexOf('_', h - 1) : -1;
+        return w < ROUND_PREFIX.length() ? "" : key.substring(ROUND_PREFIX.length(), w);
+    }
+
+    // Rounded default image; decoded once per size, ideally before the first draw
+    Image placeholder(double reqWidth, double reqHeight) {
+        String key = reqWidth + "_" + reqHeight;
+        Image img = placeholders.get(key);
+        if (img == null) {
+            img = round(getDefaultImage(reqWidth, reqHeight), reqWidth, reqHeight);
+            placeholders.put(key, img);
+        }
+        return img;
+    }
+
+    private void submit(String path, double reqWidth, double reqHeight) {
+        String key = key(path, reqWidth, reqHeight);
+        if (!inFlight.add(key)) return;
+        decoder.execute(new Decode(key, path, reqWidth, reqHeight));
+    }
+
+    private final class Decode implements Runnable {
+        final String key;
+        final String path;
+        final double reqWidth;
+        final double reqHeight;
+
+        Decode(String key, String path, double reqWidth, double reqHeight) {
+            this.key = key;
+            this.path = path;
+            this.reqWidth = reqWidth;
+            this.reqHeight = reqHeight;
+        }
+
+        @Override
+        public void run() {
+            Image rounded = round(loadScaled(path, reqWidth, reqHeight), reqWidth, reqHeight);
+            cache.put(key, rounded);
+            inFlight.remove(key);
+            Platform.runLater(() -> onReady.accept(path, rounded));
+        }
+    }
+
+    // Fill the disk cache for every photo of the roster in the background, without touching
+    // the in-memory cache. Progress shows in the thumbnailDisk.writes metric.
+    void warmDiskCache(List<User> users, double reqWidth, double reqHeight) {
+        if (disk == null) return;
+        int generation = warmGeneration.incrementAndGet();
+        int w = (int) Math.max(1, Math.round(reqWidth));
+        int h = (int) Math.max(1, Math.round(reqHeight));
+        warmer.execute(() -> {
+            Set<String> seen = new HashSet<>();
+            for (int i = 0; i < users.size(); i++) {
+                if (warmGeneration.get() != generation) return;
+                String path = users.get(i).getPhotoPath();
+                if (path == null || path.isEmpty() || !seen.add(path)) continue;
+                File source = localFile(path);
+                if (source == null || disk.contains(source, w, h)) continue;
+                Image scaled = decode(source.toURI().toString(), reqWidth, reqHeight);
+                if (scaled != null) {
+                    disk.store(source, w, h, scaled);
+                }
+            }
+        });
+    }
+
+    // Pack the roster's thumbnails into atlas pages in the background, in roster order until
+    // the budget is used up. fresh starts over (a different roster); otherwise only photos
+    // not in the atlas yet are added.
+    void buildAtlas(List<User> users, double reqWidth, double reqHeight, boolean fresh) {
+        if (ATLAS_BUDGET < (long) ThumbnailAtlas.PAGE_SIZE * ThumbnailAtlas.PAGE_SIZE * 4) return;
+        int generation = atlasGeneration.incrementAndGet();
+        int w = (int) Math.max(1, Math.round(reqWidth));
+        int h = (int) Math.max(1, Math.round(reqHeight));
+        atlasBuilder.execute(() -> {
+            ThumbnailAtlas target = atlas;
+            if (fresh || target == null) {
+                target = new ThumbnailAtlas(ATLAS_BUDGET, w, h);
+                atlas = target;
+            }
+            try {
+                for (int i = 0; i < users.size() && target.hasRoom(); i++) {
+                    if (atlasGeneration.get() != generation) return;
+                    String path = users.get(i).getPhotoPath();
+                    if (path == null || path.isEmpty() || target.contains(path)) continue;
+                    if (!target.add(path, roundedPixels(loadScaled(path, reqWidth, reqHeight), w, h))) break;
+                }
+            } finally {
+                target.publish();
+            }
+        });
+    }
+
+    // Where the card thumbnail for path sits in the atlas, or null (not packed, or not yet)
+    ThumbnailAtlas.Slot atlasSlot(String path) {
+        ThumbnailAtlas current = atlas;
+        return current == null ? null : current.get(path);
+    }
+
+    String describeAtlas() {
+        ThumbnailAtlas current = atlas;
+        return current == null ? "缩略图图集: 未建立" : current.describe();
+    }
+
+    // Photo decoded at the card size: from the disk cache when it has it, otherwise decoded
+    // from the original and saved there. Default placeholder when missing.
+    private Image loadScaled(String path, double reqWidth, double reqHeight) {
+        File source = disk == null ? null : localFile(path);
+        if (source == null) {
+            long start = Metrics.now();
+            Image img = loadImage(path, reqWidth, reqHeight);
+            DECODE.recordSince(start);
+            return img;
+        }
+        int w = (int) Math.max(1, Math.round(reqWidth));
+        int h = (int) Math.max(1, Math.round(reqHeight));
+        long start = Metrics.now();
+        Image cached = disk.load(source, w, h);
+        if (cached != null) {
+            DISK_LOAD.recordSince(start);
+            return cached;
+        }
+        start = Metrics.now();
+        Image scaled = decode(source.toURI().toString(), reqWidth, reqHeight);
+        DECODE.recordSince(start);
+        if (scaled == null) return getDefaultImage(reqWidth, reqHeight);
+        disk.store(source, w, h, scaled);
+        return scaled;
+    }
+
+    // The photo as an existing local file, or null (no path, URL or classpath resource)
+    private static File localFile(String path) {
+        if (path == null || path.trim().isEmpty()) return null;
+        String p = path.trim();
+        if (p.startsWith("http://") || p.startsWith("https://") || p.startsWith("file:")) return null;
+        File f = new File(p);
+        if (!f.isAbsolute()) {
+            f = new File(System.getProperty("user.dir"), p);
+        }
+        return f.isFile() ? f : null;
+    }
+
+    private static Image decode(String uri, double reqWidth, double reqHeight) {
+        try {
+            Image image = new Image(uri, reqWidth, reqHeight, false, true);
+            return image.isError() ? null : image;
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    // Decode raw image (no rounding). Returns default placeholder when missing.
+    // Not cached: it is only an intermediate for the rounded thumbnail.
+    private Image loadImage(String path, double reqWidth, double reqHeight) {
+        if (path == null || path.trim().isEmpty()) {
+            return getDefaultImage(reqWidth, reqHeight);
+        }
+
+        String uri = null;
+        String p = path.trim();
+        File local = localFile(p);
+        if (local != null) {
+            uri = local.toURI().toString();
+        } else if (p.startsWith("http://") || p.startsWith("https://") || p.startsWith("file:")) {
+            uri = p;
+        } else {
+            java.net.URL res = getClass().getResource("/" + p);
+            if (res != null) uri = res.toString();
+        }
+        Image image = uri == null ? null : decode(uri, reqWidth, reqHeight);
+        return image == null ? getDefaultImage(reqWidth, reqHeight) : image;
+    }
+
+    String describeDisk() {
+        return disk == null ? "磁盘缩略图缓存: 已关闭" : disk.describe();
+    }
+
+    // Round the corners with direct pixel operations, so it can run on any thread.
+    // The photo is stretched to the card size, then the corner pixels are scaled by their
+    // coverage of the 15px arc (the same shape the old Rectangle clip produced).
+    private Image round(Image base, double reqWidth, double reqHeight) {
+        long startNanos = System.nanoTime();
+        int w = (int) Math.max(1, Math.round(reqWidth));
+        int h = (int) Math.max(1, Math.round(reqHeight));
+        int[] argb = roundedPixels(base, w, h);
+        WritableImage rounded = new WritableImage(w, h);
+        rounded.getPixelWriter().setPixels(0, 0, w, h, PixelFormat.getIntArgbPreInstance(), argb, 0, w);
+        roundedCount.incrementAndGet();
+        roundedNanos.addAndGet(System.nanoTime() - startNanos);
+        return rounded;
+    }
+
+    // Premultiplied ARGB pixels of base scaled to w x h, with the corners rounded
+    private int[] roundedPixels(Image base, int w, int h) {
+        int[] argb = readScaled(base, w, h);
+
+        float[] corner = cornerMask();
+        int r = CORNER_SIZE;
+        for (int y = 0; y < Math.min(r, h); y++) {
+            for (int x = 0; x < Math.min(r, w); x++) {
+                float c = corner[y * r + x];
+                if (c >= 1f) continue;
+                scale(argb, y * w + x, c);
+                scale(argb, y * w + (w - 1 - x), c);
+                scale(argb, (h - 1 - y) * w + x, c);
+                scale(argb, (h - 1 - y) * w + (w - 1 - x), c);
+            }
+        }
+        return argb;
+    }
+
+    // Premultiplied ARGB pixels of base, nearest-neighbour scaled to w x h when needed
+    private static int[] readScaled(Image base, int w, int h) {
+        int bw = (int) base.getWidth();
+        int bh = (int) base.getHeight();
+        PixelReader reader = base.getPixelReader();
+        int[] out = new int[w * h];
+        if (reader == null || bw <= 0 || bh <= 0) return out;
+        if (bw == w && bh == h) {
+            reader.getPixels(0, 0, w, h, PixelFormat.getIntArgbPreInstance(), out, 0, w);
+            return out;
+        }
+        int[] src = new int[bw * bh];
+        reader.getPixels(0, 0, bw, bh, PixelFormat.getIntArgbPreInstance(), src, 0, bw);
+        for (int y = 0; y < h; y++) {
+            int sy = (int) ((y + 0.5) * bh / h);
+            for (int x = 0; x < w; x++) {
+                int sx = (int) ((x + 0.5) * bw / w);
+                out[y * w + x] = src[sy * bw + sx];
+            }
+        }
+        return out;
+    }
+
+    private static void scale(int[] argb, int i, float c) {
+        int p = argb[i];
+        int a = Math.round(((p >>> 24) & 0xFF) * c);
+        int red = Math.round(((p >>> 16) & 0xFF) * c);
+        int g = Math.round(((p >>> 8) & 0xFF) * c);
+        int b = Math.round((p & 0xFF) * c);
+        argb[i] = (a << 24) | (red << 16) | (g << 8) | b;
+    }
+
+    // Coverage of the top-left corner square by the arc, 4x4 supersampled
+    private static float[] cornerMask() {
+        float[] mask = cornerMask;
+        if (mask != null) return mask;
+        int r = CORNER_SIZE;
+        double radius = CORNER_ARC / 2.0;
+        mask = new float[r * r];
+        for (int y = 0; y < r; y++) {
+            for (int x = 0; x < r; x++) {
+                int inside = 0;
+                for (int sy = 0; sy < 4; sy++) {
+                    for (int sx = 0; sx < 4; sx++) {
+                        double dx = radius - (x + (sx + 0.5) / 4);
+                        double dy = radius - (y + (sy + 0.5) / 4);
+                        if (dx <= 0 || dy <= 0 || dx * dx + dy * dy <= radius * radius) inside++;
+                    }
+                }
+                mask[y * r + x] = inside / 16f;
+            }
+        }
+        cornerMask = mask;
+        return mask;
+    }
+
+    // Average time spent producing one rounded thumbnail, in microseconds
+    double averageRoundMicros() {
+        long n = roundedCount.get();
+        return n == 0 ? 0 : roundedNanos.get() / 1000.0 / n;
+    }
+
+    private Image getDefaultImage(double reqWidth, double reqHeight) {
+        String[] defaults = new String[] { "images/default.png", "images/default.jpg" };
+        for (String p : defaults) {
+            String key = "__DEFAULT__" + p + "_" + reqWidth + "_" + reqHeight;
+            if (defaultImages.containsKey(key)) {
+                return defaultImages.get(key);
+            }
+            File f = new File(p);
+            if (f.exists()) {
+                try {
+                    Image img = new Image(f.toURI().toString(), reqWidth, reqHeight, false, true);
+                    if (!img.isError()) {
+                        defaultImages.put(key, img);
+                        return img;
+                    }
+                } catch (Exception ignore) {
+                    // ignore
+                }
+            }
+            // try classpath resource
+            java.net.URL res = getClass().getResource("/" + p);
+            if (res != null) {
+                try {
+                    Image img = new Image(res.toString(), reqWidth, reqHeight, false, true);
+                    if (!img.isError()) {
+                        defaultImages.put(key, img);
+                        return img;
+                    }
+                } catch (Exception ignore) {
+                }
+            }
+        }
+        return new WritableImage((int)Math.max(1, reqWidth), (int)Math.max(1, reqHeight));
+    }
+}